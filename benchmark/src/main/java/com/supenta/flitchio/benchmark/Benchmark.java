@@ -0,0 +1,43 @@
+package com.supenta.flitchio.benchmark;
+
+/**
+ * A piece of code measured by the {@link BenchmarkRunner}.
+ */
+public abstract class Benchmark {
+    private final String name;
+
+    protected Benchmark(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Called once before the measures, outside of them.
+     */
+    public void setUp() {
+    }
+
+    /**
+     * Called once after the measures, outside of them.
+     */
+    public void tearDown() {
+    }
+
+    /**
+     * @return The number of bytes produced by one operation, for the benchmarks of an encoding,
+     * or -1 if it isn't relevant. Called after {@link #setUp()}.
+     */
+    public long getBytesPerOp() {
+        return -1L;
+    }
+
+    /**
+     * Execute the measured operation the given number of times.
+     *
+     * @return Any value computed from the results, so that the work can't be optimised away.
+     */
+    public abstract long run(int reps);
+}
@@ -0,0 +1,66 @@
+package com.supenta.flitchio.benchmark;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.os.Build;
+import android.os.Bundle;
+import android.util.Log;
+
+import com.supenta.flitchio.sdk.FlitchioController;
+import com.supenta.flitchio.sdk.SdkBenchmarks;
+
+/**
+ * Entry point of the benchmarks:
+ * <pre>
+ * adb shell am instrument -w com.supenta.flitchio.benchmark/.BenchmarkInstrumentation
+ * </pre>
+ * A single benchmark can be selected with {@code -e benchmark <name>}.
+ * <p>
+ * The results are printed as tab-separated lines, preceded by the version of the SDK and the
+ * device, so that the outputs of two releases can be compared line by line.
+ */
+public class BenchmarkInstrumentation extends Instrumentation {
+    private static final String TAG = "FlitchioBenchmark";
+    private static final String ARG_BENCHMARK = "benchmark";
+
+    private String selected;
+
+    @Override
+    public void onCreate(Bundle arguments) {
+        super.onCreate(arguments);
+
+        selected = arguments != null ? arguments.getString(ARG_BENCHMARK) : null;
+        start();
+    }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+
+        final StringBuilder report = new StringBuilder();
+        report.append("# SDK version code ").append(FlitchioController.getVersionCode())
+                .append(", ").append(Build.MANUFACTURER).append(' ').append(Build.MODEL)
+                .append(", API ").append(Build.VERSION.SDK_INT).append('\n');
+        report.append(BenchmarkRunner.Result.HEADER).append('\n');
+
+        final BenchmarkRunner runner = new BenchmarkRunner();
+        for (Benchmark benchmark : SdkBenchmarks.all(getTargetContext())) {
+            if (selected != null && !selected.equals(benchmark.getName())) {
+                continue;
+            }
+
+            final BenchmarkRunner.Result result = runner.run(benchmark);
+            Log.i(TAG, result.toString());
+            report.append(result).append('\n');
+
+            final Bundle status = new Bundle();
+            status.putString(Instrumentation.REPORT_KEY_STREAMRESULT, result + "\n");
+            sendStatus(0, status);
+        }
+        Log.v(TAG, "Sink: " + runner.getSink());
+
+        final Bundle results = new Bundle();
+        results.putString(Instrumentation.REPORT_KEY_STREAMRESULT, report.toString());
+        finish(Activity.RESULT_OK, results);
+    }
+}
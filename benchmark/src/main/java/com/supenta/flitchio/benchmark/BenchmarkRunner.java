@@ -0,0 +1,103 @@
+package com.supenta.flitchio.benchmark;
+
+import android.os.Debug;
+
+import java.util.Arrays;
+
+/**
+ * Runs a {@link Benchmark} in the manner of JMH or Caliper: a warm-up phase, then several
+ * timed samples of a number of repetitions chosen to last long enough to be measured.
+ * The result is the median time per operation and the number of objects allocated per operation,
+ * plus the size of the output of an operation for the benchmarks of an encoding.
+ */
+public final class BenchmarkRunner {
+    private static final long WARMUP_NANOS = 500L * 1000L * 1000L;
+    private static final long SAMPLE_NANOS = 200L * 1000L * 1000L;
+    private static final int SAMPLES = 9;
+
+    /**
+     * Sink for the values returned by the benchmarks.
+     */
+    private long sink = 0L;
+
+    public Result run(Benchmark benchmark) {
+        benchmark.setUp();
+        try {
+            // Warm up, and find the number of repetitions filling a sample
+            int reps = 1;
+            final long warmupStart = System.nanoTime();
+            while (System.nanoTime() - warmupStart < WARMUP_NANOS) {
+                final long start = System.nanoTime();
+                sink += benchmark.run(reps);
+                final long duration = System.nanoTime() - start;
+
+                if (duration < SAMPLE_NANOS && reps < Integer.MAX_VALUE / 2) {
+                    reps *= 2;
+                }
+            }
+
+            final double[] nanosPerOp = new double[SAMPLES];
+            for (int i = 0; i < SAMPLES; i++) {
+                final long start = System.nanoTime();
+                sink += benchmark.run(reps);
+                nanosPerOp[i] = (double) (System.nanoTime() - start) / reps;
+            }
+            Arrays.sort(nanosPerOp);
+
+            // Objects allocated by all the threads, since some benchmarks hand work over
+            Debug.resetGlobalAllocCount();
+            Debug.startAllocCounting();
+            sink += benchmark.run(reps);
+            Debug.stopAllocCounting();
+            final double allocsPerOp = (double) Debug.getGlobalAllocCount() / reps;
+
+            return new Result(benchmark.getName(), nanosPerOp[SAMPLES / 2],
+                    nanosPerOp[0], nanosPerOp[SAMPLES - 1], allocsPerOp,
+                    benchmark.getBytesPerOp());
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    /**
+     * @return The sum of the values returned by the benchmarks, to be printed.
+     */
+    public long getSink() {
+        return sink;
+    }
+
+    /**
+     * Measures of one benchmark.
+     */
+    public static final class Result {
+        public final String name;
+        public final double medianNanosPerOp;
+        public final double minNanosPerOp;
+        public final double maxNanosPerOp;
+        public final double allocationsPerOp;
+        public final long bytesPerOp;
+
+        Result(String name, double medianNanosPerOp, double minNanosPerOp, double maxNanosPerOp,
+               double allocationsPerOp, long bytesPerOp) {
+            this.name = name;
+            this.medianNanosPerOp = medianNanosPerOp;
+            this.minNanosPerOp = minNanosPerOp;
+            this.maxNanosPerOp = maxNanosPerOp;
+            this.allocationsPerOp = allocationsPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        /**
+         * @return A tab-separated line, in the order of {@link #HEADER}.
+         */
+        @Override
+        public String toString() {
+            return String.format(java.util.Locale.US, "%s\t%.1f\t%.1f\t%.1f\t%.2f\t%s",
+                    name, medianNanosPerOp, minNanosPerOp, maxNanosPerOp, allocationsPerOp,
+                    bytesPerOp < 0L ? "-" : Long.toString(bytesPerOp));
+        }
+
+        public static final String HEADER =
+                "benchmark\tmedian ns/op\tmin ns/op\tmax ns/op\tallocations/op\tbytes/op";
+    }
+}
@@ -0,0 +1,333 @@
+package com.supenta.flitchio.sdk;
+
+import android.content.Context;
+import android.os.Parcel;
+import android.os.RemoteException;
+import android.os.SystemClock;
+
+import com.supenta.flitchio.benchmark.Benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmarks of the hot paths of the SDK. They live in the package of the SDK so that they can
+ * reach the internals that the public API doesn't expose, like the client stub.
+ */
+public final class SdkBenchmarks {
+
+    private SdkBenchmarks() {
+    }
+
+    public static List<Benchmark> all(Context context) {
+        List<Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.add(new SnapshotWriteToParcel(false));
+        benchmarks.add(new SnapshotWriteToParcel(true));
+        benchmarks.add(new SnapshotCreateFromParcel(false));
+        benchmarks.add(new SnapshotCreateFromParcel(true));
+        benchmarks.add(new ButtonEventCreateFromParcel());
+        benchmarks.add(new JoystickEventCreateFromParcel());
+        benchmarks.add(new SnapshotAccessors());
+        benchmarks.add(new JoystickAngleDistance());
+        benchmarks.add(new StubToListenerDispatch(context));
+        return benchmarks;
+    }
+
+    /**
+     * @return A snapshot where every button is pressed and every joystick is off-centre.
+     */
+    private static FlitchioSnapshot newFilledSnapshot() {
+        FlitchioSnapshot snapshot = new FlitchioSnapshot();
+        final long now = SystemClock.uptimeMillis();
+
+        for (int i = 0; i < InputElement.BUTTONS.length; i++) {
+            snapshot.setButton(i, now, now, FlitchioSnapshot.STATE_PRESSED, 0.5f, 3);
+        }
+        for (int i = 0; i < InputElement.JOYSTICKS.length; i++) {
+            snapshot.setJoystick(i, now, InputEvent.ACTION_MOVE, 0.3f, -0.7f);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return A parcel holding a filled snapshot, in the flat or the legacy format.
+     */
+    private static Parcel newSnapshotParcel(boolean flat) {
+        FlitchioSnapshot snapshot = newFilledSnapshot();
+        snapshot.setFlatParcel(flat);
+
+        Parcel parcel = Parcel.obtain();
+        snapshot.writeToParcel(parcel, 0);
+        return parcel;
+    }
+
+    private static class SnapshotWriteToParcel extends Benchmark {
+        private final boolean flat;
+        private FlitchioSnapshot snapshot;
+        private Parcel parcel;
+
+        SnapshotWriteToParcel(boolean flat) {
+            super(flat ? "snapshot.writeToParcel.flat" : "snapshot.writeToParcel");
+            this.flat = flat;
+        }
+
+        @Override
+        public void setUp() {
+            snapshot = newFilledSnapshot();
+            snapshot.setFlatParcel(flat);
+            parcel = Parcel.obtain();
+        }
+
+        @Override
+        public long getBytesPerOp() {
+            parcel.setDataPosition(0);
+            snapshot.writeToParcel(parcel, 0);
+            return parcel.dataPosition();
+        }
+
+        @Override
+        public long run(int reps) {
+            long size = 0L;
+            for (int i = 0; i < reps; i++) {
+                parcel.setDataPosition(0);
+                snapshot.writeToParcel(parcel, 0);
+                size += parcel.dataPosition();
+            }
+            return size;
+        }
+
+        @Override
+        public void tearDown() {
+            parcel.recycle();
+        }
+    }
+
+    private static class SnapshotCreateFromParcel extends Benchmark {
+        private final boolean flat;
+        private Parcel parcel;
+
+        SnapshotCreateFromParcel(boolean flat) {
+            super(flat ? "snapshot.createFromParcel.flat" : "snapshot.createFromParcel");
+            this.flat = flat;
+        }
+
+        @Override
+        public void setUp() {
+            parcel = newSnapshotParcel(flat);
+        }
+
+        @Override
+        public long getBytesPerOp() {
+            return parcel.dataSize();
+        }
+
+        @Override
+        public long run(int reps) {
+            long sum = 0L;
+            for (int i = 0; i < reps; i++) {
+                parcel.setDataPosition(0);
+                FlitchioSnapshot snapshot = FlitchioSnapshot.CREATOR.createFromParcel(parcel);
+                sum += snapshot.getButtonState(0);
+            }
+            return sum;
+        }
+
+        @Override
+        public void tearDown() {
+            parcel.recycle();
+        }
+    }
+
+    private static class ButtonEventCreateFromParcel extends Benchmark {
+        private Parcel parcel;
+
+        ButtonEventCreateFromParcel() {
+            super("buttonEvent.createFromParcel");
+        }
+
+        @Override
+        public void setUp() {
+            final long now = SystemClock.uptimeMillis();
+            parcel = Parcel.obtain();
+            new ButtonEvent(InputElement.BUTTON_TOP, now, now, InputEvent.ACTION_DOWN, 0.5f, 0)
+                    .writeToParcel(parcel, 0);
+        }
+
+        @Override
+        public long run(int reps) {
+            long sum = 0L;
+            for (int i = 0; i < reps; i++) {
+                parcel.setDataPosition(0);
+                ButtonEvent event = ButtonEvent.CREATOR.createFromParcel(parcel);
+                sum += event.getRepeatCount();
+                event.recycle();
+            }
+            return sum;
+        }
+
+        @Override
+        public void tearDown() {
+            parcel.recycle();
+        }
+    }
+
+    private static class JoystickEventCreateFromParcel extends Benchmark {
+        private Parcel parcel;
+
+        JoystickEventCreateFromParcel() {
+            super("joystickEvent.createFromParcel");
+        }
+
+        @Override
+        public void setUp() {
+            parcel = Parcel.obtain();
+            new JoystickEvent(InputElement.JOYSTICK_TOP, SystemClock.uptimeMillis(),
+                    InputEvent.ACTION_MOVE, 0.3f, -0.7f)
+                    .writeToParcel(parcel, 0);
+        }
+
+        @Override
+        public long run(int reps) {
+            long sum = 0L;
+            for (int i = 0; i < reps; i++) {
+                parcel.setDataPosition(0);
+                JoystickEvent event = JoystickEvent.CREATOR.createFromParcel(parcel);
+                sum += event.getAction();
+                event.recycle();
+            }
+            return sum;
+        }
+
+        @Override
+        public void tearDown() {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * Reads everything a game typically reads from a snapshot at every frame.
+     */
+    private static class SnapshotAccessors extends Benchmark {
+        private FlitchioSnapshot snapshot;
+
+        SnapshotAccessors() {
+            super("snapshot.accessors");
+        }
+
+        @Override
+        public void setUp() {
+            snapshot = newFilledSnapshot();
+        }
+
+        @Override
+        public long run(int reps) {
+            float sum = 0.0f;
+            for (int i = 0; i < reps; i++) {
+                for (InputElement.Button button : InputElement.BUTTONS) {
+                    sum += snapshot.getButtonPressure(button) + snapshot.getButtonState(button);
+                }
+                for (InputElement.Joystick joystick : InputElement.JOYSTICKS) {
+                    sum += snapshot.getJoystickX(joystick) + snapshot.getJoystickY(joystick);
+                }
+            }
+            return (long) sum;
+        }
+    }
+
+    private static class JoystickAngleDistance extends Benchmark {
+        private JoystickEvent event;
+
+        JoystickAngleDistance() {
+            super("joystickEvent.angleDistance");
+        }
+
+        @Override
+        public void setUp() {
+            event = new JoystickEvent(InputElement.JOYSTICK_TOP, SystemClock.uptimeMillis(),
+                    InputEvent.ACTION_MOVE, 0.3f, -0.7f);
+        }
+
+        @Override
+        public long run(int reps) {
+            float sum = 0.0f;
+            for (int i = 0; i < reps; i++) {
+                sum += event.getAngle() + event.getDistance();
+            }
+            return (long) sum;
+        }
+    }
+
+    /**
+     * From the reception of an event by the client stub to the return of the listener callback,
+     * through the listener thread. The stub is called directly, as a binder thread would do.
+     */
+    private static class StubToListenerDispatch extends Benchmark {
+        /**
+         * Number of events sent before waiting for the listener, smaller than the queue so that
+         * no event is dropped.
+         */
+        private static final int BURST = 64;
+
+        private final Context context;
+        private FlitchioController controller;
+        private IFlitchioClient stub;
+        private volatile long received = 0L;
+
+        StubToListenerDispatch(Context context) {
+            super("dispatch.stubToListener");
+            this.context = context;
+        }
+
+        @Override
+        public void setUp() {
+            controller = FlitchioController.getInstance(context);
+            controller.setEventRecycling(true);
+            controller.onResume(new FlitchioEventListener() {
+                @Override
+                public void onFlitchioButtonEvent(InputElement.Button source, ButtonEvent event) {
+                    received++;
+                }
+
+                @Override
+                public void onFlitchioJoystickEvent(InputElement.Joystick source,
+                                                    JoystickEvent event) {
+                    received++;
+                }
+            });
+            stub = controller.getClientStub();
+        }
+
+        @Override
+        public long run(int reps) {
+            final long target = received + reps;
+            final long time = SystemClock.uptimeMillis();
+
+            try {
+                for (int i = 0; i < reps; i++) {
+                    stub.onJoystickEvent(JoystickEvent.obtain(InputElement.JOYSTICK_TOP, time,
+                            InputEvent.ACTION_MOVE, 0.3f, -0.7f));
+
+                    if (i % BURST == BURST - 1) {
+                        awaitReceived(target - reps + i + 1);
+                    }
+                }
+            } catch (RemoteException e) {
+                throw new IllegalStateException(e);
+            }
+            awaitReceived(target);
+
+            return received;
+        }
+
+        private void awaitReceived(long count) {
+            while (received < count) {
+                Thread.yield();
+            }
+        }
+
+        @Override
+        public void tearDown() {
+            controller.onPause();
+        }
+    }
+}
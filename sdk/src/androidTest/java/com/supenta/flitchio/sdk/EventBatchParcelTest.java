@@ -0,0 +1,133 @@
+package com.supenta.flitchio.sdk;
+
+import android.os.Parcel;
+
+import junit.framework.TestCase;
+
+/**
+ * Runs on a device: {@link Parcel} is native, so the parcel format can't be covered by the JVM
+ * tests.
+ */
+public class EventBatchParcelTest extends TestCase {
+    private static final int TOP = InputElement.BUTTON_TOP.code;
+    private static final int JOYSTICK = InputElement.JOYSTICK_BOTTOM.code;
+
+    private static EventBatch writeAndRead(EventBatch batch) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            batch.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            return EventBatch.CREATOR.createFromParcel(parcel);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * Write the records of an older or newer Manager: the base fields, then the given fields.
+     */
+    private static void writeButtonRecord(Parcel out, int eventTime, int... appendedFields) {
+        out.writeInt(EventBatch.KIND_BUTTON);
+        out.writeInt(TOP);
+        out.writeLong(eventTime);
+        out.writeInt(InputEvent.ACTION_DOWN);
+        out.writeFloat(0.5f);
+        out.writeFloat(0.0f);
+        out.writeInt(0);
+        out.writeLong(eventTime);
+        for (int field : appendedFields) {
+            out.writeInt(field);
+        }
+    }
+
+    private static EventBatch readRecords(int recordSize, int... appendedFields) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeInt(recordSize);
+            parcel.writeInt(2);
+            writeButtonRecord(parcel, 10, appendedFields);
+            writeButtonRecord(parcel, 20, appendedFields);
+            parcel.setDataPosition(0);
+            return EventBatch.CREATOR.createFromParcel(parcel);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    public void testWritesRecordsOfTheAnnouncedSize() {
+        EventBatch batch = new EventBatch();
+        batch.addButton(TOP, 1L, 2L, InputEvent.ACTION_DOWN, 1.0f, 0, 1, 0);
+
+        Parcel parcel = Parcel.obtain();
+        try {
+            batch.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            assertEquals(EventBatch.RECORD_SIZE, parcel.readInt());
+            assertEquals(1, parcel.readInt());
+            assertEquals(EventBatch.RECORD_SIZE, parcel.dataAvail());
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    public void testKeepsMixedRecordsThroughAParcel() {
+        EventBatch batch = new EventBatch();
+        batch.addButton(TOP, 100L, 110L, InputEvent.ACTION_DOWN, 0.75f, 0, 41, 0);
+        batch.addJoystick(JOYSTICK, 120L, InputEvent.ACTION_MOVE | InputEvent.FLAG_DISPATCH,
+                0.25f, -0.5f, 42, 1);
+        batch.addButton(TOP, 100L, 130L, InputEvent.ACTION_MOVE, 1.0f, 3, 43, 2);
+
+        EventBatch read = writeAndRead(batch);
+        assertEquals(3, read.size());
+
+        assertEquals(EventBatch.KIND_BUTTON, read.getKind(0));
+        assertEquals(TOP, read.getCode(0));
+        assertEquals(100L, read.getFirstDownTime(0));
+        assertEquals(110L, read.getEventTime(0));
+        assertEquals(InputEvent.ACTION_DOWN, read.getFlaggedAction(0));
+        assertEquals(0.75f, read.getPressure(0), 0.0);
+        assertEquals(0, read.getRepeatCount(0));
+        assertEquals(41, read.getSequence(0));
+        assertEquals(0, read.getDeviceId(0));
+
+        assertEquals(EventBatch.KIND_JOYSTICK, read.getKind(1));
+        assertEquals(JOYSTICK, read.getCode(1));
+        assertEquals(120L, read.getEventTime(1));
+        assertEquals(InputEvent.ACTION_MOVE | InputEvent.FLAG_DISPATCH,
+                read.getFlaggedAction(1));
+        assertEquals(0.25f, read.getX(1), 0.0);
+        assertEquals(-0.5f, read.getY(1), 0.0);
+        assertEquals(42, read.getSequence(1));
+        assertEquals(1, read.getDeviceId(1));
+
+        assertEquals(EventBatch.KIND_BUTTON, read.getKind(2));
+        assertEquals(130L, read.getEventTime(2));
+        assertEquals(InputEvent.ACTION_MOVE, read.getFlaggedAction(2));
+        assertEquals(1.0f, read.getPressure(2), 0.0);
+        assertEquals(3, read.getRepeatCount(2));
+        assertEquals(43, read.getSequence(2));
+        assertEquals(2, read.getDeviceId(2));
+    }
+
+    public void testReadsTheRecordsOfOlderManagers() {
+        EventBatch read = readRecords(EventBatch.RECORD_SIZE_WITHOUT_SEQUENCE);
+        assertEquals(2, read.size());
+        assertEquals(20L, read.getEventTime(1));
+        assertEquals(0, read.getSequence(1));
+        assertEquals(0, read.getDeviceId(1));
+
+        read = readRecords(EventBatch.RECORD_SIZE_WITHOUT_DEVICE_ID, 7);
+        assertEquals(2, read.size());
+        assertEquals(20L, read.getEventTime(1));
+        assertEquals(7, read.getSequence(1));
+        assertEquals(0, read.getDeviceId(1));
+    }
+
+    public void testSkipsTheFieldsOfNewerManagers() {
+        EventBatch read = readRecords(EventBatch.RECORD_SIZE + 4, 7, 1, 99);
+        assertEquals(2, read.size());
+        assertEquals(20L, read.getEventTime(1));
+        assertEquals(7, read.getSequence(1));
+        assertEquals(1, read.getDeviceId(1));
+    }
+}
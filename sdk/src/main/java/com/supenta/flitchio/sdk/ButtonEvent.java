@@ -29,7 +29,18 @@ public class ButtonEvent extends InputEvent<InputElement.Button> implements Parc
     public static final Parcelable.Creator<ButtonEvent> CREATOR =
             new Parcelable.Creator<ButtonEvent>() {
                 public ButtonEvent createFromParcel(Parcel in) {
-                    return new ButtonEvent(in, InputElement.BUTTONS[in.readInt()]);
+                    // KEEP IT SYNCED WITH writeToParcel()
+                    InputElement.Button source = InputElement.BUTTONS[in.readInt()];
+                    long eventTime = in.readLong();
+                    int action = in.readInt();
+                    float pressure = in.readFloat();
+                    int repeatCount = in.readInt();
+                    long firstDownTime = in.readLong();
+
+                    ButtonEvent event = obtain(source, firstDownTime, eventTime,
+                            action & ~TRAILER_FLAGS, pressure, repeatCount);
+                    event.readTrailer(in, action);
+                    return event;
                 }
 
                 public ButtonEvent[] newArray(int size) {
@@ -37,9 +48,12 @@ public class ButtonEvent extends InputEvent<InputElement.Button> implements Parc
                 }
             };
 
-    private final float pressure;
-    private final int repeatCount;
-    private final long firstDownTime;
+    private static final int MAX_RECYCLED = 16;
+    private static final Pool<ButtonEvent> pool = new Pool<>(MAX_RECYCLED);
+
+    private float pressure;
+    private int repeatCount;
+    private long firstDownTime;
 
     /**
      * Not to be used by 3rd-party developers.
@@ -56,12 +70,61 @@ public class ButtonEvent extends InputEvent<InputElement.Button> implements Parc
         this.firstDownTime = firstDownTime;
     }
 
-    private ButtonEvent(Parcel in, InputElement.Button source) {
-        super(in, source);
+    /**
+     * Obtain an event from the pool, or a new one if the pool is empty.
+     */
+    static ButtonEvent obtain(InputElement.Button source, long firstDownTime, long eventTime,
+                              int action, float pressure, int repeatCount) {
+        ButtonEvent event = pool.acquire();
+        if (event == null) {
+            return new ButtonEvent(source, firstDownTime, eventTime, action, pressure,
+                    repeatCount);
+        }
+
+        event.set(source, firstDownTime, eventTime, action, pressure, repeatCount);
+        return event;
+    }
+
+    /**
+     * Obtain a copy of the given event. Use it to keep an event passed to your
+     * {@link FlitchioEventListener} when event recycling is enabled.
+     * Call {@link #recycle()} on the copy when you don't need it anymore.
+     *
+     * @param other The event to copy.
+     * @return A copy of the given event, that you own.
+     * @see FlitchioController#setEventRecycling(boolean)
+     * @since 0.8.0
+     */
+    public static ButtonEvent obtain(ButtonEvent other) {
+        other.checkNotRecycled();
+        ButtonEvent copy = obtain(other.source, other.firstDownTime, other.eventTime,
+                other.flaggedAction, other.pressure, other.repeatCount);
+        copy.deviceId = other.deviceId;
+        return copy;
+    }
 
-        pressure = in.readFloat();
-        repeatCount = in.readInt();
-        firstDownTime = in.readLong();
+    /**
+     * {@inheritDoc}
+     *
+     * @since 0.8.0
+     */
+    @Override
+    public void recycle() {
+        if (markRecycled()) {
+            pool.release(this);
+        }
+    }
+
+    /**
+     * Overwrite the data of this event, so that the object can be reused.
+     */
+    void set(InputElement.Button source, long firstDownTime, long eventTime, int action,
+             float pressure, int repeatCount) {
+        set(source, eventTime, action);
+
+        this.pressure = pressure;
+        this.repeatCount = repeatCount;
+        this.firstDownTime = firstDownTime;
     }
 
     /**
@@ -71,6 +134,7 @@ public class ButtonEvent extends InputEvent<InputElement.Button> implements Parc
      * @since 0.5.0
      */
     public float getPressure() {
+        checkNotRecycled();
         return pressure;
     }
 
@@ -83,6 +147,7 @@ public class ButtonEvent extends InputEvent<InputElement.Button> implements Parc
      * @since 0.5.0
      */
     public final int getRepeatCount() {
+        checkNotRecycled();
         return repeatCount;
     }
 
@@ -95,6 +160,7 @@ public class ButtonEvent extends InputEvent<InputElement.Button> implements Parc
      * @since 0.5.0
      */
     public long getFirstDownTime() {
+        checkNotRecycled();
         return firstDownTime;
     }
 
@@ -116,6 +182,7 @@ public class ButtonEvent extends InputEvent<InputElement.Button> implements Parc
         dest.writeFloat(pressure);
         dest.writeInt(repeatCount);
         dest.writeLong(firstDownTime);
+        writeTrailer(dest);
     }
 
     @Override
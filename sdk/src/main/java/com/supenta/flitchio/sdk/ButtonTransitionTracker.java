@@ -0,0 +1,51 @@
+package com.supenta.flitchio.sdk;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Counts the presses and releases of each button between two polls, from the events received
+ * by the controller. This lets a client that polls slowly know that a button has been pressed
+ * and released in between, which the state of the snapshot alone doesn't tell.
+ * <p>
+ * It is fed on the binder thread and drained on the polling thread, without lock.
+ */
+final class ButtonTransitionTracker {
+    private final AtomicIntegerArray presses = new AtomicIntegerArray(InputElement.BUTTONS.length);
+    private final AtomicIntegerArray releases = new AtomicIntegerArray(InputElement.BUTTONS.length);
+
+    /**
+     * Take into account a button event received from the Manager.
+     */
+    void onButtonEvent(int buttonCode, int flaggedAction) {
+        switch (flaggedAction & ~InputEvent.FLAG_DISPATCH) {
+            case InputEvent.ACTION_DOWN:
+                presses.incrementAndGet(buttonCode);
+                break;
+            case InputEvent.ACTION_UP:
+                releases.incrementAndGet(buttonCode);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Copy the transitions counted since the previous call into the given snapshot, and reset the
+     * counters.
+     */
+    void drainInto(FlitchioSnapshot snapshot) {
+        for (int i = 0; i < InputElement.BUTTONS.length; i++) {
+            snapshot.setButtonTransitions(i, presses.getAndSet(i, 0), releases.getAndSet(i, 0));
+        }
+    }
+
+    /**
+     * Forget the transitions counted so far.
+     */
+    void reset() {
+        for (int i = 0; i < InputElement.BUTTONS.length; i++) {
+            presses.set(i, 0);
+            releases.set(i, 0);
+        }
+    }
+}
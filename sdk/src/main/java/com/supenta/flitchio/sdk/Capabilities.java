@@ -0,0 +1,109 @@
+package com.supenta.flitchio.sdk;
+
+/**
+ * Not to be used by 3rd-party developers.
+ * <p>
+ * Optional features of the protocol between the SDK and Flitchio Manager. After authenticating,
+ * the client announces the features it supports with
+ * {@link IFlitchioService#negotiateCapabilities(int, int)} and the Manager answers with the subset
+ * it will actually use for this client. Managers that predate the negotiation answer 0, meaning
+ * that only the original protocol is used.
+ * KEEP IT SYNCED WITH THE VALUE IN FLITCHIO MANAGER.
+ *
+ * @hide
+ */
+public final class Capabilities {
+    /**
+     * The Manager delivers events with {@link IFlitchioClient#onEventBatch(EventBatch)} instead of
+     * one transaction per event.
+     *
+     * @hide
+     */
+    public static final int EVENT_BATCH = 1;        // 0001
+
+    /**
+     * The Manager filters the events it sends according to the filter passed to
+     * {@link IFlitchioService#registerClientWithFilter}: the events rejected by the filter are
+     * never sent.
+     *
+     * @hide
+     */
+    public static final int SUBSCRIPTION_FILTER = 2; // 0010
+
+    /**
+     * The Manager doesn't send the events of the {@link InputElement.Button.DpadButton}s: the
+     * client derives them from the joystick events. The snapshots still hold the state of the
+     * D-pad buttons.
+     *
+     * @hide
+     */
+    public static final int LOCAL_DPAD = 4;         // 0100
+
+    /**
+     * The Manager notifies the connections and disconnections of Flitchio with
+     * {@link IFlitchioClient#onStatusChanged(int)} to the clients registered with
+     * {@link IFlitchioService#registerStatusCallback}, instead of the
+     * {@link InternalStatusReceiver#ACTION_FLITCHIO_STATUS_CHANGED} broadcast.
+     *
+     * @hide
+     */
+    public static final int STATUS_CALLBACK = 8;    // 1000
+
+    /**
+     * The Manager writes the snapshots returned by {@link IFlitchioService#getSnapshot(int)} in
+     * the flat format of {@link FlitchioSnapshot}, without class names. The SDK reads both
+     * formats anyway.
+     *
+     * @hide
+     */
+    public static final int FLAT_SNAPSHOT = 16;     // 1 0000
+
+    /**
+     * The Manager numbers its successive states and answers
+     * {@link IFlitchioService#getSnapshotSince(int, long)} with the elements that changed since
+     * the state known by the client: see {@link SnapshotDelta}.
+     *
+     * @hide
+     */
+    public static final int DELTA_SNAPSHOT = 32;    // 10 0000
+
+    /**
+     * The Manager numbers the events it sends to each client with consecutive non-zero numbers,
+     * so that the client can detect the events that were lost or reordered: see
+     * {@link InputEvent#FLAG_HAS_SEQUENCE}. In an {@link EventBatch}, the number follows the 40
+     * bytes of the base record, in records of at least 44 bytes.
+     *
+     * @hide
+     */
+    public static final int EVENT_SEQUENCE = 64;    // 100 0000
+
+    /**
+     * The Manager handles several Flitchios at once. It sends the events of all of them, tagged
+     * with the ID of their device (see {@link InputEvent#FLAG_HAS_DEVICE_ID}), and answers
+     * {@link IFlitchioService#getMultiDeviceSnapshot(int)}. The other calls keep describing
+     * device 0 only. In an {@link EventBatch}, the ID follows the sequence number, in records of
+     * at least 48 bytes.
+     *
+     * @hide
+     */
+    public static final int MULTI_DEVICE = 128;     // 1000 0000
+
+    /**
+     * Capabilities supported by this version of the SDK.
+     */
+    static final int SUPPORTED =
+            EVENT_BATCH | SUBSCRIPTION_FILTER | LOCAL_DPAD | STATUS_CALLBACK | FLAT_SNAPSHOT
+                    | DELTA_SNAPSHOT | EVENT_SEQUENCE | MULTI_DEVICE;
+
+    /**
+     * Capabilities assumed when the Manager doesn't take part in the negotiation.
+     */
+    static final int NONE = 0;
+
+    private Capabilities() {
+    }
+
+    static boolean has(int capabilities, int capability) {
+        return (capabilities & capability) == capability;
+    }
+}
@@ -0,0 +1,192 @@
+package com.supenta.flitchio.sdk;
+
+/**
+ * Derives the events of the {@link InputElement.Button.DpadButton}s from the events of their
+ * joystick, instead of receiving them from the Manager along with the joystick events for the same
+ * movement.
+ * <p>
+ * A direction is pressed when the position of the joystick on its axis goes beyond the press
+ * threshold, and released when it comes back under the release threshold. The release threshold
+ * is lower, so that a joystick held around the press threshold doesn't make the direction flicker.
+ * <p>
+ * Like the buttons handled by the Manager, a held direction repeats after {@link #REPEAT_TIMEOUT}
+ * and then every {@link #REPEAT_DELAY} (see {@link ButtonEvent}): the pressure of a repeat is the
+ * latest position on the axis. Nothing is sent when only the pressure changes. The repeats aren't
+ * caused by joystick events: they are sent by {@link #repeat(long, Listener)}, which the caller
+ * must run at {@link #getNextRepeatTime()}.
+ * <p>
+ * Each direction remembers since when it is pressed, so that its repeats and its release carry
+ * the time of the press like the events sent by the Manager. The joystick events must therefore
+ * be passed in the order they were received, before any filtering of the joystick moves.
+ * <p>
+ * This class isn't thread-safe: the joystick events and the repeats must not be passed
+ * concurrently.
+ */
+final class DpadDeriver {
+    static final float DEFAULT_PRESS_THRESHOLD = 0.5f;
+    static final float DEFAULT_RELEASE_THRESHOLD = 0.4f;
+
+    /**
+     * Delay in milliseconds between the press of a direction and its first repeat.
+     */
+    static final long REPEAT_TIMEOUT = 500L;
+
+    /**
+     * Delay in milliseconds between two repeats of a direction.
+     */
+    static final long REPEAT_DELAY = 50L;
+
+    /**
+     * Returned by {@link #getNextRepeatTime()} when no direction is pressed.
+     */
+    static final long NO_REPEAT = Long.MAX_VALUE;
+
+    private static final int DIRECTIONS = 4;
+    private static final int LEFT = 0;
+    private static final int UP = 1;
+    private static final int RIGHT = 2;
+    private static final int DOWN = 3;
+
+    /**
+     * Receives the derived events.
+     */
+    interface Listener {
+        void onDpadEvent(int deviceId, int buttonCode, long firstDownTime, long eventTime,
+                         int action, float pressure, int repeatCount);
+    }
+
+    private final float pressThreshold;
+    private final float releaseThreshold;
+
+    /*
+     * State of direction D of joystick N of device I, at index
+     * (I * JOYSTICKS.length + N) * DIRECTIONS + D.
+     */
+    private final boolean[] pressed = new boolean[
+            MultiDeviceSnapshot.MAX_DEVICES * InputElement.JOYSTICKS.length * DIRECTIONS];
+    private final int[] buttonCode = new int[pressed.length];
+    private final float[] pressure = new float[pressed.length];
+    private final long[] firstDownTime = new long[pressed.length];
+    private final int[] repeatCount = new int[pressed.length];
+    private final long[] repeatTime = new long[pressed.length];
+
+    DpadDeriver(float pressThreshold, float releaseThreshold) {
+        this.pressThreshold = pressThreshold;
+        this.releaseThreshold = releaseThreshold;
+    }
+
+    /**
+     * @return True if the given button is one of the D-pad buttons derived by this class.
+     */
+    static boolean isDpadButton(int buttonCode) {
+        return InputElement.BUTTONS[buttonCode] instanceof InputElement.Button.DpadButton;
+    }
+
+    /**
+     * @return A bitmask of the codes of the joysticks whose D-pad buttons are in the given
+     * bitmask of button codes.
+     */
+    static int getJoystickMask(int buttonMask) {
+        int joystickMask = 0;
+        for (InputElement.Joystick joystick : InputElement.JOYSTICKS) {
+            final int dpadMask = (1 << joystick.dpadLeftButton.code)
+                    | (1 << joystick.dpadUpButton.code)
+                    | (1 << joystick.dpadRightButton.code)
+                    | (1 << joystick.dpadDownButton.code);
+            if ((buttonMask & dpadMask) != 0) {
+                joystickMask |= 1 << joystick.code;
+            }
+        }
+        return joystickMask;
+    }
+
+    /**
+     * Take into account a joystick event, and pass the D-pad events it implies to the listener.
+     */
+    void onJoystickEvent(int deviceId, int joystickCode, long eventTime, int flaggedAction,
+                         float x, float y, Listener listener) {
+        final InputElement.Joystick joystick = InputElement.JOYSTICKS[joystickCode];
+        final boolean released =
+                (flaggedAction & ~InputEvent.FLAG_DISPATCH) == InputEvent.ACTION_UP;
+
+        final int joystickIndex = deviceId * InputElement.JOYSTICKS.length + joystickCode;
+
+        // The Y axis points downwards
+        update(deviceId, joystickIndex, LEFT, joystick.dpadLeftButton.code,
+                released ? 0.0f : -x, eventTime, listener);
+        update(deviceId, joystickIndex, UP, joystick.dpadUpButton.code,
+                released ? 0.0f : -y, eventTime, listener);
+        update(deviceId, joystickIndex, RIGHT, joystick.dpadRightButton.code,
+                released ? 0.0f : x, eventTime, listener);
+        update(deviceId, joystickIndex, DOWN, joystick.dpadDownButton.code,
+                released ? 0.0f : y, eventTime, listener);
+    }
+
+    private void update(int deviceId, int joystickIndex, int direction, int buttonCode,
+                        float position, long eventTime, Listener listener) {
+        final int index = joystickIndex * DIRECTIONS + direction;
+        final float newPressure = Math.min(position, 1.0f);
+
+        if (!pressed[index]) {
+            if (position >= pressThreshold) {
+                pressed[index] = true;
+                this.buttonCode[index] = buttonCode;
+                pressure[index] = newPressure;
+                firstDownTime[index] = eventTime;
+                repeatCount[index] = 0;
+                repeatTime[index] = eventTime + REPEAT_TIMEOUT;
+                listener.onDpadEvent(deviceId, buttonCode, eventTime, eventTime,
+                        InputEvent.ACTION_DOWN, newPressure, 0);
+            }
+        } else if (position < releaseThreshold) {
+            pressed[index] = false;
+            listener.onDpadEvent(deviceId, buttonCode, firstDownTime[index], eventTime,
+                    InputEvent.ACTION_UP, 0.0f, repeatCount[index]);
+        } else {
+            // Only sent with the next repeat
+            pressure[index] = newPressure;
+        }
+    }
+
+    /**
+     * Pass the repeats of the directions held long enough to the listener.
+     *
+     * @param now The current time, in the {@link android.os.SystemClock#uptimeMillis()} time
+     *            base like the event times.
+     * @return The time of the next repeat, or {@link #NO_REPEAT}.
+     */
+    long repeat(long now, Listener listener) {
+        final int directionsPerDevice = InputElement.JOYSTICKS.length * DIRECTIONS;
+
+        for (int index = 0; index < pressed.length; index++) {
+            if (!pressed[index] || repeatTime[index] > now) {
+                continue;
+            }
+
+            repeatCount[index]++;
+            repeatTime[index] += REPEAT_DELAY;
+            if (repeatTime[index] <= now) {
+                // Late repeats aren't caught up: they would all come at once
+                repeatTime[index] = now + REPEAT_DELAY;
+            }
+            listener.onDpadEvent(index / directionsPerDevice, buttonCode[index],
+                    firstDownTime[index], now, InputEvent.ACTION_MOVE, pressure[index],
+                    repeatCount[index]);
+        }
+        return getNextRepeatTime();
+    }
+
+    /**
+     * @return The time at which {@link #repeat(long, Listener)} must be run next, or
+     * {@link #NO_REPEAT} if no direction is pressed.
+     */
+    long getNextRepeatTime() {
+        long next = NO_REPEAT;
+        for (int index = 0; index < pressed.length; index++) {
+            if (pressed[index] && repeatTime[index] < next) {
+                next = repeatTime[index];
+            }
+        }
+        return next;
+    }
+}
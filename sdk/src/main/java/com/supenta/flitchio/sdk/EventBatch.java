@@ -0,0 +1,407 @@
+package com.supenta.flitchio.sdk;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.util.Arrays;
+
+/**
+ * Not to be used by 3rd-party developers.
+ * <p>
+ * Sequence of button and joystick events delivered to a client in a single transaction through
+ * {@link IFlitchioClient#onEventBatch(EventBatch)}. The events are packed as fixed-size records of
+ * primitive fields rather than as {@link ButtonEvent} and {@link JoystickEvent} objects.
+ * <p>
+ * Format of the parcel:
+ * <pre>
+ * int  size of a record in bytes
+ * int  number of records
+ * RECORD
+ *   int   kind ({@link #KIND_BUTTON} or {@link #KIND_JOYSTICK})
+ *   int   code of the source
+ *   long  event time
+ *   int   flagged action
+ *   float pressure (button) or X (joystick)
+ *   float 0 (button) or Y (joystick)
+ *   int   repeat count (button) or 0 (joystick)
+ *   long  first down time (button) or 0 (joystick)
+ *   int   sequence number, or 0 (since the records of 44 bytes)
+ *   int   ID of the device (since the records of 48 bytes)
+ * </pre>
+ * Fields appended to the record by future versions are skipped thanks to the record size. The
+ * sequence number is only set by the Managers that agreed on
+ * {@link Capabilities#EVENT_SEQUENCE}: see {@link InputEvent#FLAG_HAS_SEQUENCE}. The events of the
+ * devices other than 0 are only sent to the clients that agreed on
+ * {@link Capabilities#MULTI_DEVICE}.
+ * KEEP IT SYNCED WITH THE VALUE IN FLITCHIO MANAGER.
+ *
+ * @hide
+ */
+public final class EventBatch implements Parcelable {
+    /**
+     * @hide
+     */
+    public static final Parcelable.Creator<EventBatch> CREATOR =
+            new Parcelable.Creator<EventBatch>() {
+                public EventBatch createFromParcel(Parcel in) {
+                    EventBatch batch = obtain();
+                    batch.readFromParcel(in);
+                    return batch;
+                }
+
+                public EventBatch[] newArray(int size) {
+                    return new EventBatch[size];
+                }
+            };
+
+    static final int KIND_BUTTON = 0;
+    static final int KIND_JOYSTICK = 1;
+
+    static final int RECORD_SIZE = 48;
+    static final int RECORD_SIZE_WITHOUT_SEQUENCE = 40;
+    static final int RECORD_SIZE_WITHOUT_DEVICE_ID = 44;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private static final int MAX_RECYCLED = 4;
+    private static final Pool<EventBatch> pool = new Pool<>(MAX_RECYCLED);
+
+    private int size = 0;
+    private int[] kind;
+    private int[] code;
+    private long[] eventTime;
+    private int[] flaggedAction;
+    private float[] value0;
+    private float[] value1;
+    private int[] repeatCount;
+    private long[] firstDownTime;
+    private int[] sequence;
+    private int[] deviceId;
+
+    /**
+     * Create an empty batch.
+     *
+     * @hide
+     */
+    public EventBatch() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Obtain an empty batch from the pool, or a new one if the pool is empty.
+     */
+    static EventBatch obtain() {
+        EventBatch batch = pool.acquire();
+        if (batch == null) {
+            batch = new EventBatch();
+        }
+        return batch;
+    }
+
+    private void readFromParcel(Parcel in) {
+        final int recordSize = in.readInt();
+        final int records = in.readInt();
+
+        size = 0;
+        ensureCapacity(records);
+
+        for (int i = 0; i < records; i++) {
+            final int recordStart = in.dataPosition();
+
+            kind[i] = in.readInt();
+            code[i] = in.readInt();
+            eventTime[i] = in.readLong();
+            flaggedAction[i] = in.readInt();
+            value0[i] = in.readFloat();
+            value1[i] = in.readFloat();
+            repeatCount[i] = in.readInt();
+            firstDownTime[i] = in.readLong();
+            sequence[i] = recordSize > RECORD_SIZE_WITHOUT_SEQUENCE ? in.readInt() : 0;
+            deviceId[i] = recordSize > RECORD_SIZE_WITHOUT_DEVICE_ID ? in.readInt() : 0;
+
+            // Skip the fields not handled by this version of the SDK
+            in.setDataPosition(recordStart + recordSize);
+        }
+        size = records;
+    }
+
+    private void allocate(int capacity) {
+        kind = new int[capacity];
+        code = new int[capacity];
+        eventTime = new long[capacity];
+        flaggedAction = new int[capacity];
+        value0 = new float[capacity];
+        value1 = new float[capacity];
+        repeatCount = new int[capacity];
+        firstDownTime = new long[capacity];
+        sequence = new int[capacity];
+        deviceId = new int[capacity];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= kind.length) {
+            return;
+        }
+
+        final int newCapacity = Math.max(capacity, kind.length * 2);
+        kind = Arrays.copyOf(kind, newCapacity);
+        code = Arrays.copyOf(code, newCapacity);
+        eventTime = Arrays.copyOf(eventTime, newCapacity);
+        flaggedAction = Arrays.copyOf(flaggedAction, newCapacity);
+        value0 = Arrays.copyOf(value0, newCapacity);
+        value1 = Arrays.copyOf(value1, newCapacity);
+        repeatCount = Arrays.copyOf(repeatCount, newCapacity);
+        firstDownTime = Arrays.copyOf(firstDownTime, newCapacity);
+        sequence = Arrays.copyOf(sequence, newCapacity);
+        deviceId = Arrays.copyOf(deviceId, newCapacity);
+    }
+
+    /**
+     * Append a button event to this batch.
+     *
+     * @hide
+     */
+    public void add(ButtonEvent event) {
+        addButton(event.source.code, event.getFirstDownTime(), event.eventTime,
+                event.flaggedAction, event.getPressure(), event.getRepeatCount(),
+                event.sequence, event.deviceId);
+    }
+
+    void addButton(int buttonCode, long firstDownTime, long eventTime, int flaggedAction,
+                   float pressure, int repeatCount, int sequence, int deviceId) {
+        ensureCapacity(size + 1);
+
+        this.kind[size] = KIND_BUTTON;
+        this.code[size] = buttonCode;
+        this.eventTime[size] = eventTime;
+        this.flaggedAction[size] = flaggedAction;
+        this.value0[size] = pressure;
+        this.value1[size] = 0.0f;
+        this.repeatCount[size] = repeatCount;
+        this.firstDownTime[size] = firstDownTime;
+        this.sequence[size] = sequence;
+        this.deviceId[size] = deviceId;
+        size++;
+    }
+
+    /**
+     * Append a joystick event to this batch.
+     *
+     * @hide
+     */
+    public void add(JoystickEvent event) {
+        addJoystick(event.source.code, event.eventTime, event.flaggedAction, event.getX(),
+                event.getY(), event.sequence, event.deviceId);
+    }
+
+    void addJoystick(int joystickCode, long eventTime, int flaggedAction, float x, float y,
+                     int sequence, int deviceId) {
+        ensureCapacity(size + 1);
+
+        this.kind[size] = KIND_JOYSTICK;
+        this.code[size] = joystickCode;
+        this.eventTime[size] = eventTime;
+        this.flaggedAction[size] = flaggedAction;
+        this.value0[size] = x;
+        this.value1[size] = y;
+        this.repeatCount[size] = 0;
+        this.firstDownTime[size] = 0L;
+        this.sequence[size] = sequence;
+        this.deviceId[size] = deviceId;
+        size++;
+    }
+
+    /**
+     * Replace the content of this batch with a copy of the given one.
+     */
+    void set(EventBatch other) {
+        size = 0;
+        ensureCapacity(other.size);
+
+        System.arraycopy(other.kind, 0, kind, 0, other.size);
+        System.arraycopy(other.code, 0, code, 0, other.size);
+        System.arraycopy(other.eventTime, 0, eventTime, 0, other.size);
+        System.arraycopy(other.flaggedAction, 0, flaggedAction, 0, other.size);
+        System.arraycopy(other.value0, 0, value0, 0, other.size);
+        System.arraycopy(other.value1, 0, value1, 0, other.size);
+        System.arraycopy(other.repeatCount, 0, repeatCount, 0, other.size);
+        System.arraycopy(other.firstDownTime, 0, firstDownTime, 0, other.size);
+        System.arraycopy(other.sequence, 0, sequence, 0, other.size);
+        System.arraycopy(other.deviceId, 0, deviceId, 0, other.size);
+        size = other.size;
+    }
+
+    /**
+     * Remove the events rejected by the given filter, keeping the others in order.
+     */
+    void retainAccepted(LocalEventFilter filter) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!filter.accept(this, i)) {
+                continue;
+            }
+
+            if (kept != i) {
+                kind[kept] = kind[i];
+                code[kept] = code[i];
+                eventTime[kept] = eventTime[i];
+                flaggedAction[kept] = flaggedAction[i];
+                value0[kept] = value0[i];
+                value1[kept] = value1[i];
+                repeatCount[kept] = repeatCount[i];
+                firstDownTime[kept] = firstDownTime[i];
+                sequence[kept] = sequence[i];
+                deviceId[kept] = deviceId[i];
+            }
+            kept++;
+        }
+        size = kept;
+    }
+
+    /**
+     * Remove all the events from this batch, so that it can be reused.
+     *
+     * @hide
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Give this batch back to the pool once all its events have been dispatched. The batch must
+     * not be used anymore after calling this method.
+     */
+    void recycle() {
+        clear();
+        pool.release(this);
+    }
+
+    /**
+     * @hide
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check whether the event at the given index can be handled by this version of the SDK.
+     */
+    boolean isKnown(int index) {
+        if (deviceId[index] < 0 || deviceId[index] >= MultiDeviceSnapshot.MAX_DEVICES) {
+            return false;
+        }
+
+        switch (kind[index]) {
+            case KIND_BUTTON:
+                return code[index] >= 0 && code[index] < InputElement.BUTTONS.length;
+            case KIND_JOYSTICK:
+                return code[index] >= 0 && code[index] < InputElement.JOYSTICKS.length;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return The ID of the device that caused the event.
+     */
+    int getDeviceId(int index) {
+        return deviceId[index];
+    }
+
+    int getKind(int index) {
+        return kind[index];
+    }
+
+    int getCode(int index) {
+        return code[index];
+    }
+
+    long getEventTime(int index) {
+        return eventTime[index];
+    }
+
+    int getFlaggedAction(int index) {
+        return flaggedAction[index];
+    }
+
+    /**
+     * @return The pressure of a button event.
+     */
+    float getPressure(int index) {
+        return value0[index];
+    }
+
+    int getRepeatCount(int index) {
+        return repeatCount[index];
+    }
+
+    long getFirstDownTime(int index) {
+        return firstDownTime[index];
+    }
+
+    /**
+     * @return The sequence number of the event, or 0 if the Manager doesn't number the events.
+     */
+    int getSequence(int index) {
+        return sequence[index];
+    }
+
+    /**
+     * @return The X position of a joystick event.
+     */
+    float getX(int index) {
+        return value0[index];
+    }
+
+    /**
+     * @return The Y position of a joystick event.
+     */
+    float getY(int index) {
+        return value1[index];
+    }
+
+    /**
+     * Copy the event at the given index into the ring.
+     *
+     * @return False if the ring is full: the event is dropped.
+     */
+    boolean offerTo(EventRing ring, int index, long receiptTime) {
+        if (kind[index] == KIND_BUTTON) {
+            return ring.offerButton(deviceId[index], code[index], firstDownTime[index],
+                    eventTime[index], flaggedAction[index], value0[index], repeatCount[index],
+                    receiptTime);
+        } else {
+            return ring.offerJoystick(deviceId[index], code[index], eventTime[index],
+                    flaggedAction[index], value0[index], value1[index], receiptTime);
+        }
+    }
+
+    /**
+     * @hide
+     */
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    /**
+     * @hide
+     */
+    @Override
+    public void writeToParcel(Parcel out, int flags) {
+        out.writeInt(RECORD_SIZE);
+        out.writeInt(size);
+
+        for (int i = 0; i < size; i++) {
+            out.writeInt(kind[i]);
+            out.writeInt(code[i]);
+            out.writeLong(eventTime[i]);
+            out.writeInt(flaggedAction[i]);
+            out.writeFloat(value0[i]);
+            out.writeFloat(value1[i]);
+            out.writeInt(repeatCount[i]);
+            out.writeLong(firstDownTime[i]);
+            out.writeInt(sequence[i]);
+            out.writeInt(deviceId[i]);
+        }
+    }
+}
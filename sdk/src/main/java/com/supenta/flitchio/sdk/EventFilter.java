@@ -0,0 +1,114 @@
+package com.supenta.flitchio.sdk;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Subset of the events a {@link FlitchioController} wants to receive, to be passed to
+ * {@link FlitchioController#setEventFilter(EventFilter)}. By default, a controller receives the
+ * events of all the buttons and joysticks, at the full rate of Flitchio.
+ * <p>
+ * A filter lists the buttons and joysticks of interest: the events of the other elements are
+ * never delivered. It can also limit the joystick moves, with a minimum distance between two
+ * delivered positions and a maximum number of moves per second. The presses and releases of the
+ * joysticks ({@link InputEvent#ACTION_DOWN} and {@link InputEvent#ACTION_UP}) and all the events
+ * of the buttons are never limited, so that no transition is lost. Neither are the moves back to
+ * the centre of a joystick, so that a released joystick is never left at an outdated position.
+ * <p>
+ * For example, a screen that only uses the bottom joystick and the top button could use:
+ * <pre>
+ * controller.setEventFilter(new EventFilter()
+ *         .button(InputElement.BUTTON_TOP)
+ *         .joystick(InputElement.JOYSTICK_BOTTOM)
+ *         .minJoystickDelta(0.02f)
+ *         .maxJoystickRate(60));
+ * </pre>
+ *
+ * @since 0.8.0
+ */
+public final class EventFilter {
+    private int buttonMask = 0;
+    private int joystickMask = 0;
+    private float minJoystickDelta = 0.0f;
+    private int maxJoystickRate = 0;
+
+    /**
+     * Create a filter that lets no event through. Add the elements of interest with
+     * {@link #button(InputElement.Button)} and {@link #joystick(InputElement.Joystick)}.
+     *
+     * @since 0.8.0
+     */
+    public EventFilter() {
+    }
+
+    /**
+     * Receive the events of the given button.
+     *
+     * @return This filter.
+     * @since 0.8.0
+     */
+    public EventFilter button(@NonNull InputElement.Button button) {
+        buttonMask |= 1 << button.code;
+        return this;
+    }
+
+    /**
+     * Receive the events of the given joystick.
+     *
+     * @return This filter.
+     * @since 0.8.0
+     */
+    public EventFilter joystick(@NonNull InputElement.Joystick joystick) {
+        joystickMask |= 1 << joystick.code;
+        return this;
+    }
+
+    /**
+     * Skip the joystick moves whose position is closer than the given distance to the position
+     * of the previous event delivered for that joystick.
+     *
+     * @param delta A distance in the coordinates of the joystick, where the X and Y axes range
+     *              from -1.0 to 1.0. 0.0 (the default) delivers every move.
+     * @return This filter.
+     * @since 0.8.0
+     */
+    public EventFilter minJoystickDelta(float delta) {
+        minJoystickDelta = delta;
+        return this;
+    }
+
+    /**
+     * Skip the joystick moves that follow the previous event delivered for that joystick by less
+     * than 1 / {@code rateHz} second.
+     *
+     * @param rateHz The maximum number of moves delivered per second and per joystick. 0 (the
+     *               default) delivers every move.
+     * @return This filter.
+     * @since 0.8.0
+     */
+    public EventFilter maxJoystickRate(int rateHz) {
+        maxJoystickRate = rateHz;
+        return this;
+    }
+
+    /**
+     * @return A bitmask of the codes of the buttons of interest.
+     */
+    int getButtonMask() {
+        return buttonMask;
+    }
+
+    /**
+     * @return A bitmask of the codes of the joysticks of interest.
+     */
+    int getJoystickMask() {
+        return joystickMask;
+    }
+
+    float getMinJoystickDelta() {
+        return minJoystickDelta;
+    }
+
+    int getMaxJoystickRate() {
+        return maxJoystickRate;
+    }
+}
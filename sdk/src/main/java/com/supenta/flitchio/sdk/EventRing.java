@@ -0,0 +1,274 @@
+package com.supenta.flitchio.sdk;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Preallocated, lock-free single-producer/single-consumer ring of event slots, used to hand the
+ * events over from the binder thread to the listener thread.
+ * <p>
+ * The producer is the {@link IFlitchioClient} stub: the binder driver delivers the oneway
+ * transactions addressed to one binder object one at a time, so there is only one producer at a
+ * time even though it may run on different binder threads. The repeats of the derived D-pad
+ * buttons are also produced on the main thread, under a lock taken by both producers. The
+ * consumer is whatever thread the events are dispatched on.
+ * <p>
+ * The slots hold primitive fields only: events are materialised (from their pool) by the
+ * consumer, right before being dispatched.
+ */
+final class EventRing {
+    static final int KIND_BUTTON = EventBatch.KIND_BUTTON;
+    static final int KIND_JOYSTICK = EventBatch.KIND_JOYSTICK;
+
+    private final int mask;
+
+    private final int[] deviceId;
+    private final int[] kind;
+    private final int[] code;
+    private final long[] eventTime;
+    private final int[] flaggedAction;
+    private final float[] value0;
+    private final float[] value1;
+    private final int[] repeatCount;
+    private final long[] firstDownTime;
+    private final long[] receiptTime;
+
+    /*
+     * Only accessed by the consumer: see coalesceJoystickMoves().
+     */
+    private final boolean[] coalesced;
+    private final boolean[] newerMovePending =
+            new boolean[MultiDeviceSnapshot.MAX_DEVICES * InputElement.JOYSTICKS.length];
+
+    /**
+     * Index of the next slot to write. Only modified by the producer.
+     */
+    private final AtomicLong writeIndex = new AtomicLong(0L);
+
+    /**
+     * Index of the next slot to read. Only modified by the consumer.
+     */
+    private final AtomicLong readIndex = new AtomicLong(0L);
+
+    /**
+     * @param capacity The number of slots. Must be a power of 2.
+     */
+    EventRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of 2");
+        }
+
+        mask = capacity - 1;
+
+        deviceId = new int[capacity];
+        kind = new int[capacity];
+        code = new int[capacity];
+        eventTime = new long[capacity];
+        flaggedAction = new int[capacity];
+        value0 = new float[capacity];
+        value1 = new float[capacity];
+        repeatCount = new int[capacity];
+        firstDownTime = new long[capacity];
+        receiptTime = new long[capacity];
+        coalesced = new boolean[capacity];
+    }
+
+    /*
+     * PRODUCER SIDE
+     */
+
+    /**
+     * Copy a button event into the next free slot.
+     *
+     * @param receiptTime When the event has been received, in {@link System#nanoTime()} time base,
+     *                    or 0 if it isn't measured.
+     * @return False if the ring is full: the event is dropped.
+     */
+    boolean offerButton(int deviceId, int buttonCode, long firstDownTime, long eventTime,
+                        int flaggedAction, float pressure, int repeatCount, long receiptTime) {
+        final long index = writeIndex.get();
+        if (index - readIndex.get() > mask) {
+            return false;
+        }
+
+        final int slot = (int) index & mask;
+        this.deviceId[slot] = deviceId;
+        this.kind[slot] = KIND_BUTTON;
+        this.code[slot] = buttonCode;
+        this.eventTime[slot] = eventTime;
+        this.flaggedAction[slot] = flaggedAction;
+        this.value0[slot] = pressure;
+        this.value1[slot] = 0.0f;
+        this.repeatCount[slot] = repeatCount;
+        this.firstDownTime[slot] = firstDownTime;
+        this.receiptTime[slot] = receiptTime;
+
+        writeIndex.lazySet(index + 1); // Publishes the slot
+        return true;
+    }
+
+    /**
+     * Copy a joystick event into the next free slot.
+     *
+     * @param receiptTime When the event has been received, in {@link System#nanoTime()} time base,
+     *                    or 0 if it isn't measured.
+     * @return False if the ring is full: the event is dropped.
+     */
+    boolean offerJoystick(int deviceId, int joystickCode, long eventTime, int flaggedAction,
+                          float x, float y, long receiptTime) {
+        final long index = writeIndex.get();
+        if (index - readIndex.get() > mask) {
+            return false;
+        }
+
+        final int slot = (int) index & mask;
+        this.deviceId[slot] = deviceId;
+        this.kind[slot] = KIND_JOYSTICK;
+        this.code[slot] = joystickCode;
+        this.eventTime[slot] = eventTime;
+        this.flaggedAction[slot] = flaggedAction;
+        this.value0[slot] = x;
+        this.value1[slot] = y;
+        this.repeatCount[slot] = 0;
+        this.firstDownTime[slot] = 0L;
+        this.receiptTime[slot] = receiptTime;
+
+        writeIndex.lazySet(index + 1); // Publishes the slot
+        return true;
+    }
+
+    /*
+     * CONSUMER SIDE
+     * The slots between getReadIndex() (included) and getWriteIndex() (excluded) can be read
+     * until they are released with release().
+     */
+
+    long getReadIndex() {
+        return readIndex.get();
+    }
+
+    long getWriteIndex() {
+        return writeIndex.get();
+    }
+
+    /**
+     * Give the slots before the given index back to the producer.
+     */
+    void release(long upToIndex) {
+        readIndex.lazySet(upToIndex);
+    }
+
+    /**
+     * Mark the joystick {@link InputEvent#ACTION_MOVE} events between the given indices that are
+     * followed, in the same range, by a newer move of the same joystick. The moves are never
+     * merged across an {@link InputEvent#ACTION_DOWN} or {@link InputEvent#ACTION_UP} of that
+     * joystick, like the batching of {@link android.view.MotionEvent}s, nor across devices.
+     *
+     * @return The number of events marked, which can be checked with {@link #isCoalesced(long)}.
+     */
+    int coalesceJoystickMoves(long fromIndex, long toIndex) {
+        for (int i = 0; i < newerMovePending.length; i++) {
+            newerMovePending[i] = false;
+        }
+
+        int count = 0;
+        // Backwards, so that the newest move of each joystick is the one kept
+        for (long index = toIndex - 1; index >= fromIndex; index--) {
+            final int slot = (int) index & mask;
+            coalesced[slot] = false;
+
+            if (kind[slot] != KIND_JOYSTICK) {
+                continue;
+            }
+
+            final int joystick = deviceId[slot] * InputElement.JOYSTICKS.length + code[slot];
+            if ((flaggedAction[slot] & ~InputEvent.FLAG_DISPATCH) == InputEvent.ACTION_MOVE) {
+                if (newerMovePending[joystick]) {
+                    coalesced[slot] = true;
+                    count++;
+                } else {
+                    newerMovePending[joystick] = true;
+                }
+            } else {
+                newerMovePending[joystick] = false;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return True if the event in the given slot is superseded by a newer one, according to the
+     * last call to {@link #coalesceJoystickMoves(long, long)}.
+     */
+    boolean isCoalesced(long index) {
+        return coalesced[(int) index & mask];
+    }
+
+    int getDeviceId(long index) {
+        return deviceId[(int) index & mask];
+    }
+
+    int getKind(long index) {
+        return kind[(int) index & mask];
+    }
+
+    int getCode(long index) {
+        return code[(int) index & mask];
+    }
+
+    long getEventTime(long index) {
+        return eventTime[(int) index & mask];
+    }
+
+    int getFlaggedAction(long index) {
+        return flaggedAction[(int) index & mask];
+    }
+
+    /**
+     * @return The pressure of a button event, or the X position of a joystick event.
+     */
+    float getValue0(long index) {
+        return value0[(int) index & mask];
+    }
+
+    /**
+     * @return 0 for a button event, or the Y position of a joystick event.
+     */
+    float getValue1(long index) {
+        return value1[(int) index & mask];
+    }
+
+    int getRepeatCount(long index) {
+        return repeatCount[(int) index & mask];
+    }
+
+    long getFirstDownTime(long index) {
+        return firstDownTime[(int) index & mask];
+    }
+
+    long getReceiptTime(long index) {
+        return receiptTime[(int) index & mask];
+    }
+
+    /**
+     * Obtain the event held in the given slot from the pool of events.
+     */
+    ButtonEvent obtainButtonEvent(long index) {
+        final int slot = (int) index & mask;
+        ButtonEvent event = ButtonEvent.obtain(InputElement.BUTTONS[code[slot]],
+                firstDownTime[slot], eventTime[slot], flaggedAction[slot], value0[slot],
+                repeatCount[slot]);
+        event.deviceId = deviceId[slot];
+        return event;
+    }
+
+    /**
+     * Obtain the event held in the given slot from the pool of events.
+     */
+    JoystickEvent obtainJoystickEvent(long index) {
+        final int slot = (int) index & mask;
+        JoystickEvent event = JoystickEvent.obtain(InputElement.JOYSTICKS[code[slot]],
+                eventTime[slot], flaggedAction[slot], value0[slot], value1[slot]);
+        event.deviceId = deviceId[slot];
+        return event;
+    }
+}
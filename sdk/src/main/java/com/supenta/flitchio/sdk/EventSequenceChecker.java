@@ -0,0 +1,62 @@
+package com.supenta.flitchio.sdk;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks the sequence numbers of the events received from a Manager that agreed on
+ * {@link Capabilities#EVENT_SEQUENCE}, to detect the events that were lost or delivered out of
+ * order on the way. The first number received is taken as the reference, and a new checker is set
+ * up every time the client registers, since the events sent while unregistered are not missed.
+ * <p>
+ * Only the latest number is kept, not the set of the numbers received: an event that arrives
+ * late is counted as reordered, while the gap it left had already been counted as missed when the
+ * later event arrived. The counters belong to the {@link FlitchioController}, so that they add up
+ * across registrations.
+ */
+final class EventSequenceChecker {
+    private final AtomicLong missedEventCount;
+    private final AtomicLong reorderedEventCount;
+
+    /**
+     * Sequence number of the latest event received, or 0 before the first one.
+     */
+    private int lastSequence = 0;
+
+    /**
+     * @param missedEventCount    Incremented by the number of events missing in each gap.
+     * @param reorderedEventCount Incremented for each event received after a later one.
+     */
+    EventSequenceChecker(AtomicLong missedEventCount, AtomicLong reorderedEventCount) {
+        this.missedEventCount = missedEventCount;
+        this.reorderedEventCount = reorderedEventCount;
+    }
+
+    /**
+     * Take into account the sequence number of a received event.
+     *
+     * @param sequence The sequence number of the event, or 0 if it has none.
+     * @return False if events were lost or reordered before this one, in which case the state
+     * built from the events can't be trusted anymore.
+     */
+    boolean check(int sequence) {
+        if (sequence == 0) {
+            return true;
+        }
+
+        // Compared by difference, so that the wrap-around of the sequence numbers is harmless
+        final int distance = sequence - lastSequence;
+        if (lastSequence == 0 || distance == 1) {
+            lastSequence = sequence;
+            return true;
+        }
+
+        if (distance > 1) {
+            missedEventCount.addAndGet(distance - 1);
+            lastSequence = sequence;
+        } else {
+            // Arrived after a later event, or twice: the newer state may have been overwritten
+            reorderedEventCount.incrementAndGet();
+        }
+        return false;
+    }
+}
@@ -12,16 +12,25 @@ import android.net.Uri;
 import android.opengl.GLSurfaceView;
 import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.support.annotation.BinderThread;
 import android.support.annotation.MainThread;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.view.Choreographer;
 import android.view.SurfaceView;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Object providing the main communication channel to the Flitchio Manager app.
@@ -54,6 +63,8 @@ import java.util.Map;
  * <em>listening mode</em>.
  * Simply use the variant of {@link #onResume(FlitchioEventListener)} that lets you register
  * a {@link FlitchioEventListener}.
+ * Games that render with a {@link GLSurfaceView} can receive the events directly on their
+ * render thread with {@link #onResumeOnRenderThread(FlitchioEventListener, GLSurfaceView)}.
  *
  * @since 0.5.0
  */
@@ -65,6 +76,17 @@ public class FlitchioController {
             FLITCHIO_MANAGER_PACKAGE + ".communication.FlitchioService";
     private static final int INVALID_AUTH_TOKEN = -1;
 
+    /**
+     * Number of events that can be waiting for the listener before new ones get dropped.
+     * Must be a power of 2.
+     */
+    private static final int EVENT_RING_CAPACITY = 256;
+
+    /**
+     * Frame time of the events that are not dispatched at the start of a frame.
+     */
+    private static final long NO_FRAME = -1L;
+
     /**
      * Map of per-{@link Context} existing {@link FlitchioController}s.
      * Using {@link WeakReference} to not leak memory when contexts have to be destroyed by the
@@ -76,7 +98,7 @@ public class FlitchioController {
      * Interface to this client passed to FlitchioService to identify this client and to allow
      * callbacks.
      */
-    private final IFlitchioClient clientStub = new IFlitchioClientStub();
+    private final IFlitchioClientStub clientStub = new IFlitchioClientStub();
 
     /**
      * Locks used to synchronise the 3 threads: the main one where FlitchioController is created
@@ -92,8 +114,33 @@ public class FlitchioController {
      * Receiver used for listening to connection/disconnection events of Flitchio.
      */
     private final InternalStatusReceiver statusReceiver = new InternalStatusReceiver();
+
+    /**
+     * Whether the status changes are being listened to, between onResume() and onPause().
+     */
+    private boolean statusListening = false;
+
+    /**
+     * Whether the client is registered on the Service to receive the status changes through
+     * {@link IFlitchioClient#onStatusChanged(int)}. Guarded by {@link #lockService}.
+     */
+    private boolean statusCallbackRegistered = false;
+
+    /*
+     * Posted by the binder thread when the status changes. They are allocated once, so that the
+     * binder thread doesn't allocate anything.
+     */
+    private final StatusCallbackRunnable connectedCallback =
+            new StatusCallbackRunnable(Status.CONNECTED);
+    private final StatusCallbackRunnable disconnectedCallback =
+            new StatusCallbackRunnable(Status.DISCONNECTED);
     private final Handler mainThreadHandler = new Handler();
 
+    /**
+     * Posted when the status is set out of the main thread.
+     */
+    private final StatusRunnable statusRunnable = new StatusRunnable();
+
     /**
      * Received from service once the handshake has been done.
      * Used for every further communication.
@@ -102,6 +149,25 @@ public class FlitchioController {
 
     private IFlitchioService flitchioService = null;
 
+    /**
+     * Shared memory in which the Manager publishes the latest state of Flitchio, if it supports
+     * it. When available, {@link #obtainSnapshot()} reads it instead of doing a binder call.
+     */
+    private volatile SharedSnapshotMemory snapshotMemory = null;
+
+    /**
+     * Optional protocol features that the Manager agreed to use with this client.
+     * See {@link Capabilities}.
+     */
+    private int serviceCapabilities = Capabilities.NONE;
+
+    /**
+     * State of the Manager as of {@link #deltaSequence}, to which the deltas are applied when it
+     * agreed on {@link Capabilities#DELTA_SNAPSHOT}. Guarded by {@link #lockService}.
+     */
+    private final FlitchioSnapshot deltaBase = new FlitchioSnapshot();
+    private long deltaSequence = SnapshotDelta.NO_SEQUENCE;
+
     /**
      * The event listener to be called on receiving data.
      * Known limitation: there can be only one event listener per controller, and only one
@@ -115,6 +181,111 @@ public class FlitchioController {
      */
     private FlitchioStatusListener statusListener = null;
 
+    /**
+     * Whether the events passed to the {@link FlitchioEventListener} are recycled after the
+     * callback returns. See {@link #setEventRecycling(boolean)}.
+     */
+    private volatile boolean eventRecycling = false;
+
+    /**
+     * Whether the latencies of the events are measured. See
+     * {@link #setLatencyMetricsEnabled(boolean)}.
+     */
+    private volatile boolean latencyMetricsEnabled = false;
+    private final LatencyHistogram binderLatency = new LatencyHistogram();
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    private final LatencyHistogram listenerLatency = new LatencyHistogram();
+
+    /**
+     * Whether the presses and releases of the buttons are counted for the polling clients. See
+     * {@link #setButtonTransitionTracking(boolean)}.
+     */
+    private volatile boolean buttonTransitionTracking = false;
+    private final ButtonTransitionTracker buttonTransitions = new ButtonTransitionTracker();
+
+    /**
+     * Whether the positions of the joysticks are kept for the polling clients. See
+     * {@link #setJoystickHistoryTracking(boolean)}.
+     */
+    private volatile boolean joystickHistoryTracking = false;
+    private final JoystickHistoryTracker joystickHistory = new JoystickHistoryTracker();
+
+    /**
+     * Snapshot reused by {@link #obtainSnapshot(ByteBuffer)}. Guarded by itself.
+     */
+    private final FlitchioSnapshot bulkSnapshot = new FlitchioSnapshot();
+
+    /**
+     * Snapshot reused by {@link #obtainMultiDeviceSnapshot(MultiDeviceSnapshot)} when the
+     * Manager handles a single device. Guarded by itself.
+     */
+    private final FlitchioSnapshot singleDeviceSnapshot = new FlitchioSnapshot();
+
+    /**
+     * Background refresher of the snapshot, if prefetching is enabled. See
+     * {@link #startSnapshotPrefetching(int, long)}.
+     */
+    private volatile SnapshotPrefetcher prefetcher = null;
+
+    /**
+     * State reconstructed from the received events, if enabled. See
+     * {@link #setSnapshotReconstruction(boolean)}.
+     */
+    private volatile boolean snapshotReconstruction = false;
+    private final SnapshotStateTable stateTable = new SnapshotStateTable();
+
+    /**
+     * Subset of the events to receive, or null for all of them. See
+     * {@link #setEventFilter(EventFilter)}.
+     */
+    private EventFilter eventFilter = null;
+
+    /**
+     * Filter applied on the client side when the Manager doesn't filter the events itself.
+     */
+    private volatile LocalEventFilter localEventFilter = null;
+
+    /**
+     * Thresholds of the D-pad buttons derived from the joysticks. See
+     * {@link #setDpadThresholds(float, float)}.
+     */
+    private boolean customDpadThresholds = false;
+    private float dpadPressThreshold = DpadDeriver.DEFAULT_PRESS_THRESHOLD;
+    private float dpadReleaseThreshold = DpadDeriver.DEFAULT_RELEASE_THRESHOLD;
+
+    /**
+     * Deriver of the D-pad button events, if they are derived on the client side rather than
+     * sent by the Manager.
+     */
+    private volatile DpadDeriver dpadDeriver = null;
+
+    /**
+     * Posted on the main thread at the time of the next repeat of a derived D-pad button.
+     */
+    private final DpadRepeatRunnable dpadRepeatRunnable = new DpadRepeatRunnable();
+
+    /**
+     * Whether the client is currently registered on the Service, i.e. receives the events.
+     */
+    private volatile boolean clientRegistered = false;
+
+    /**
+     * Records the events received, if a recording is in progress. See
+     * {@link #startRecording(File)}.
+     */
+    private volatile InputRecorder recorder = null;
+
+    /**
+     * Whether the pending joystick moves are coalesced. See
+     * {@link #setJoystickMoveCoalescing(boolean)}.
+     */
+    private volatile boolean joystickMoveCoalescing = false;
+
+    /**
+     * Number of joystick moves that have been skipped because a newer one was pending.
+     */
+    private final AtomicLong coalescedEventCount = new AtomicLong(0L);
+
     /**
      * The thread to which the event callbacks will be delivered (used by default), or the
      * handler associated to the thread decided by the 3rd-party dev.
@@ -122,6 +293,38 @@ public class FlitchioController {
     private ListenerThread eventListenerThread = null;
     private Handler eventListenerThreadHandler = null;
 
+    /**
+     * Hands the events over from the binder thread to the listener thread. A new one is set up
+     * every time the listener changes, so that events meant for a previous listener are never
+     * delivered to the current one. Read without lock on the binder thread.
+     */
+    private volatile EventDrainer eventDrainer = null;
+
+    /**
+     * Number of events dropped because the listener didn't keep up and the ring was full.
+     */
+    private final AtomicLong droppedEventCount = new AtomicLong(0L);
+
+    /**
+     * Checks the sequence numbers of the received events, if the Manager agreed on
+     * {@link Capabilities#EVENT_SEQUENCE}. A new one is set up at every registration. Read without
+     * lock on the binder thread.
+     */
+    private volatile EventSequenceChecker sequenceChecker = null;
+
+    /**
+     * Number of events lost or reordered on the way from the Manager, according to their
+     * sequence numbers.
+     */
+    private final AtomicLong missedEventCount = new AtomicLong(0L);
+    private final AtomicLong reorderedEventCount = new AtomicLong(0L);
+
+    /**
+     * Whether this controller uses a {@link SyntheticFlitchioService} instead of being bound to
+     * Flitchio Manager. See {@link #onCreate(FlitchioStatusListener, SyntheticFlitchioService)}.
+     */
+    private boolean syntheticService = false;
+
     /**
      * The {@link ComponentName} for this context, used to identify this client in Flitchio Service.
      */
@@ -131,7 +334,7 @@ public class FlitchioController {
      * Status of this controller.
      */
     @NonNull
-    private Status currentStatus = new Status(Status.UNBOUND);
+    private Status currentStatus = Status.of(Status.UNBOUND);
 
     /**
      * Listener object for the binding to the service, that detects when the binding is done and
@@ -157,14 +360,24 @@ public class FlitchioController {
                         return;
                     }
 
+                    openSnapshotMemory();
+                    negotiateCapabilities();
+
+                    if (statusListening && Capabilities.has(serviceCapabilities,
+                            Capabilities.STATUS_CALLBACK)) {
+                        // Listening started before the binding: switch to the binder callback
+                        statusReceiver.stop(context);
+                        registerStatusCallback();
+                    }
+
                     // We fire "bound" event
-                    reportStatus(new Status(Status.BOUND));
+                    reportStatus(Status.of(Status.BOUND));
 
                     // Right after we fire the real connection status (connected/disconnected)
                     if (flitchioService.isConnected(authToken)) {
-                        reportStatus(new Status(Status.CONNECTED));
+                        reportStatus(Status.of(Status.CONNECTED));
                     } else {
-                        reportStatus(new Status(Status.DISCONNECTED));
+                        reportStatus(Status.of(Status.DISCONNECTED));
                     }
                 } catch (RemoteException e) {
                     FlitchioLog.e("Unexpected error: could not identify this controller");
@@ -176,7 +389,7 @@ public class FlitchioController {
             }
 
             // We register the client in case he asked for it while binding was not ready
-            if (eventListener != null) {
+            if (needsEvents()) {
                 registerClient();
             }
         }
@@ -336,8 +549,40 @@ public class FlitchioController {
         if (!willBind) {
             reportStatus(new Status.FailingStatus(Status.FailingStatus.REASON_SERVICE_UNREACHABLE));
         } else {
-            reportStatus(new Status(Status.BINDING));
+            reportStatus(Status.of(Status.BINDING));
+        }
+    }
+
+    /**
+     * Initialise this controller with a {@link SyntheticFlitchioService} instead of binding to
+     * Flitchio Manager. This is for testing only: it is reached through
+     * {@link SyntheticFlitchioService#attachTo(FlitchioController, FlitchioStatusListener)}.
+     * <p>
+     * Like {@link #onCreate(FlitchioStatusListener)}, it must be followed by the other lifecycle
+     * methods. The binding is effective as soon as this method returns.
+     *
+     * @param statusListener The listener for status changes.
+     * @param service        The service providing synthetic input.
+     */
+    @MainThread
+    void onCreate(@Nullable FlitchioStatusListener statusListener,
+                         @NonNull SyntheticFlitchioService service) {
+        this.statusListener = statusListener;
+
+        if (currentStatus.code != Status.BINDING_FAILED
+                && currentStatus.code != Status.UNBOUND) {
+            FlitchioLog.i("Called onCreate() but the status is already " + currentStatus
+                    + ": nothing will be done");
+            return;
         }
+
+        FlitchioLog.w("Using a synthetic Flitchio service: for testing only");
+        syntheticService = true;
+        reportStatus(Status.of(Status.BINDING));
+
+        // The service is local: the binding is immediate
+        serviceConnection.onServiceConnected(
+                new ComponentName(context, SyntheticFlitchioService.class), service);
     }
 
     /**
@@ -366,6 +611,102 @@ public class FlitchioController {
      */
     @MainThread
     public void onResume(FlitchioEventListener eventListener, Handler handler) {
+        onResume(eventListener, handler, null, null, false);
+    }
+
+    /**
+     * Resume this controller.
+     * <p>
+     * <strong>You must call this method (or one of its other versions) appropriately in the
+     * lifecycle of your Activity or Service.</strong>
+     * If you use this controller in an {@link Activity}, this method should be called in your
+     * Activity's onResume().
+     * If you use this controller in a {@link Service}, this method can be called right after
+     * {@link #onCreate(FlitchioStatusListener)}.
+     * <p>
+     * After calling this method, you are ensured to receive at least one
+     * {@link FlitchioStatusListener#onFlitchioStatusChanged(Status)} callback with the current
+     * status.
+     * <p>
+     * This is a variant of {@link #onResume(FlitchioEventListener)} that aligns the event
+     * callbacks on the display frames: the events are buffered as they arrive and dispatched in one
+     * burst at the start of the next frame, on the thread of the given {@link Choreographer}.
+     * This wakes up your thread at most once per frame. If your listener implements
+     * {@link FlitchioFrameListener}, it is also told the time of each frame.
+     *
+     * @param eventListener The event listener.
+     * @param choreographer The choreographer on the thread of which the callbacks will happen,
+     *                      typically {@link Choreographer#getInstance()} called on the main thread.
+     * @see FlitchioController#onResume(FlitchioEventListener, Handler)
+     * @since 0.8.0
+     */
+    @MainThread
+    public void onResumeFrameAligned(FlitchioEventListener eventListener,
+                                     Choreographer choreographer) {
+        onResume(eventListener, null, choreographer, null, false);
+    }
+
+    /**
+     * Resume this controller.
+     * <p>
+     * <strong>You must call this method (or one of its other versions) appropriately in the
+     * lifecycle of your Activity or Service.</strong>
+     * If you use this controller in an {@link Activity}, this method should be called in your
+     * Activity's onResume().
+     * <p>
+     * After calling this method, you are ensured to receive at least one
+     * {@link FlitchioStatusListener#onFlitchioStatusChanged(Status)} callback with the current
+     * status.
+     * <p>
+     * This is a variant of {@link #onResume(FlitchioEventListener)} for OpenGL games: the event
+     * callbacks happen on the render thread of the given {@link GLSurfaceView}, between two
+     * frames. The events are buffered as they arrive and dispatched in one burst through
+     * {@link GLSurfaceView#queueEvent(Runnable)}, so that your listener can update the state of
+     * your game directly, without handing the events over to the render thread again.
+     *
+     * @param eventListener The event listener.
+     * @param glSurfaceView The view on the render thread of which the callbacks will happen. Its
+     *                      renderer must be set.
+     * @see FlitchioController#onResumeManualDispatch(FlitchioEventListener)
+     * @since 0.8.0
+     */
+    @MainThread
+    public void onResumeOnRenderThread(FlitchioEventListener eventListener,
+                                       GLSurfaceView glSurfaceView) {
+        onResume(eventListener, null, null, glSurfaceView, false);
+    }
+
+    /**
+     * Resume this controller.
+     * <p>
+     * <strong>You must call this method (or one of its other versions) appropriately in the
+     * lifecycle of your Activity or Service.</strong>
+     * If you use this controller in an {@link Activity}, this method should be called in your
+     * Activity's onResume().
+     * <p>
+     * After calling this method, you are ensured to receive at least one
+     * {@link FlitchioStatusListener#onFlitchioStatusChanged(Status)} callback with the current
+     * status.
+     * <p>
+     * This is a variant of {@link #onResume(FlitchioEventListener)} where the SDK never calls
+     * your listener on its own: the events are buffered as they arrive, until you call
+     * {@link #dispatchPendingEvents()}. Call it once per iteration of your update loop, for
+     * instance at the start of {@link GLSurfaceView.Renderer#onDrawFrame}, to receive the events
+     * on that thread at that moment. If you don't call it often enough, the buffer fills up and
+     * the newest events are dropped until you do: see {@link #getDroppedEventCount()}.
+     *
+     * @param eventListener The event listener.
+     * @see FlitchioController#onResumeOnRenderThread(FlitchioEventListener, GLSurfaceView)
+     * @since 0.8.0
+     */
+    @MainThread
+    public void onResumeManualDispatch(FlitchioEventListener eventListener) {
+        onResume(eventListener, null, null, null, true);
+    }
+
+    private void onResume(FlitchioEventListener eventListener, Handler handler,
+                          Choreographer choreographer, GLSurfaceView glSurfaceView,
+                          boolean manualDispatch) {
         /*
          * SET UP THE STATUS LISTENER
          */
@@ -376,9 +717,9 @@ public class FlitchioController {
             Status statusAfterCheck;
             try {
                 if (flitchioService.isConnected(authToken)) {
-                    statusAfterCheck = new Status(Status.CONNECTED);
+                    statusAfterCheck = Status.of(Status.CONNECTED);
                 } else {
-                    statusAfterCheck = new Status(Status.DISCONNECTED);
+                    statusAfterCheck = Status.of(Status.DISCONNECTED);
                 }
             } catch (Exception e) { // NullPointerException | RemoteException
                 // Status is either UNBOUND, BINDING or BINDING_FAILED: we just fire it again
@@ -392,14 +733,20 @@ public class FlitchioController {
             reportStatus(statusAfterCheck);
 
             /*
-             * START LISTENING to status updates again
+             * START LISTENING to status updates again, through the binder callback if the Manager
+             * supports it, or through its broadcasts otherwise
              */
-            statusReceiver.start(context, new InternalStatusListener() {
-                @Override
-                public void onInternalStatusChanged(Status status) {
-                    reportStatus(status);
-                }
-            });
+            statusListening = true;
+            if (Capabilities.has(serviceCapabilities, Capabilities.STATUS_CALLBACK)) {
+                registerStatusCallback();
+            } else {
+                statusReceiver.start(context, new InternalStatusListener() {
+                    @Override
+                    public void onInternalStatusChanged(Status status) {
+                        reportStatus(status);
+                    }
+                });
+            }
         }
 
         /*
@@ -411,12 +758,24 @@ public class FlitchioController {
             this.eventListener = eventListener;
 
             if (this.eventListener != null) {
-                if (handler != null) {
-                    eventListenerThreadHandler = handler;
+                final EventRing ring = new EventRing(EVENT_RING_CAPACITY);
+
+                if (manualDispatch) {
+                    eventDrainer = new ManualEventDrainer(ring);
+                } else if (glSurfaceView != null) {
+                    eventDrainer = new RenderThreadEventDrainer(ring, glSurfaceView);
+                } else if (choreographer != null) {
+                    eventDrainer = new FrameEventDrainer(ring, choreographer);
                 } else {
-                    // We create an arbitrary thread to handle listener callbacks
-                    eventListenerThread = new ListenerThread();
-                    eventListenerThreadHandler = eventListenerThread.getHandler();
+                    if (handler != null) {
+                        eventListenerThreadHandler = handler;
+                    } else {
+                        // We create an arbitrary thread to handle listener callbacks
+                        eventListenerThread = new ListenerThread();
+                        eventListenerThreadHandler = eventListenerThread.getHandler();
+                    }
+
+                    eventDrainer = new EventDrainer(ring, eventListenerThreadHandler);
                 }
             }
         }
@@ -426,7 +785,7 @@ public class FlitchioController {
          * This will fail on the first call of onResume() as the binding will not be ready then.
          * It will be called in onServiceConnected() when the binding is ready.
          */
-        if (this.eventListener != null) {
+        if (needsEvents()) {
             registerClient();
         }
     }
@@ -503,8 +862,10 @@ public class FlitchioController {
      */
     @MainThread
     public void onPause() {
-        if (statusListener != null) {
+        if (statusListening) {
+            statusListening = false;
             statusReceiver.stop(context);
+            unregisterStatusCallback();
         }
 
         unregisterClient();
@@ -527,6 +888,8 @@ public class FlitchioController {
          * onPause() should have been called before but this is for safety.
          */
         onPause();
+        stopRecording();
+        stopSnapshotPrefetching();
 
         synchronized (lockService) {
             /*
@@ -547,19 +910,29 @@ public class FlitchioController {
             /*
              * UNBIND
              */
-            try {
-                context.unbindService(serviceConnection);
-            } catch (IllegalArgumentException e) {
-                FlitchioLog.w("It seems that you tried to call onDestroy without" +
-                        " having a binding to Flitchio Manager");
+            if (syntheticService) {
+                // Nothing to unbind: the service was local
+                syntheticService = false;
+            } else {
+                try {
+                    context.unbindService(serviceConnection);
+                } catch (IllegalArgumentException e) {
+                    FlitchioLog.w("It seems that you tried to call onDestroy without" +
+                            " having a binding to Flitchio Manager");
+                }
             }
             flitchioService = null;
+
+            if (snapshotMemory != null) {
+                snapshotMemory.close();
+                snapshotMemory = null;
+            }
         }
 
         statusListener = null;
 
         if (currentStatus.code != Status.BINDING_FAILED) {
-            reportStatus(new Status(Status.UNBOUND));
+            reportStatus(Status.of(Status.UNBOUND));
         }
     }
 
@@ -574,11 +947,64 @@ public class FlitchioController {
                 eventListenerThread = null;
             }
             eventListenerThreadHandler = null;
+            eventDrainer = null;
 
             eventListener = null;
         }
     }
 
+    /**
+     * Retrieve the shared memory in which the Manager publishes its state. This is a RPC, done
+     * only once per binding. If the Manager doesn't support it, snapshots keep being obtained
+     * through binder calls.
+     */
+    @MainThread
+    private void openSnapshotMemory() {
+        if (!SharedSnapshotMemory.isSupported()) {
+            FlitchioLog.i("Shared memory is not supported on this device: " +
+                    "snapshots will be obtained through binder calls");
+            return;
+        }
+
+        synchronized (lockService) {
+            try {
+                ParcelFileDescriptor descriptor = flitchioService.getSnapshotMemory(authToken);
+                if (descriptor != null) {
+                    snapshotMemory = SharedSnapshotMemory.map(descriptor);
+                } else {
+                    FlitchioLog.i("Flitchio Manager doesn't share its state in memory: " +
+                            "snapshots will be obtained through binder calls");
+                }
+            } catch (RemoteException e) {
+                FlitchioLog.e("Unexpected error while trying to obtain the snapshot memory");
+            }
+        }
+    }
+
+    /**
+     * Announce the optional protocol features supported by this version of the SDK, and
+     * remember the ones the Manager agreed to use. This is a RPC, done once per binding and
+     * before registering the client.
+     */
+    @MainThread
+    private void negotiateCapabilities() {
+        synchronized (lockService) {
+            try {
+                serviceCapabilities = flitchioService.negotiateCapabilities(
+                        authToken, Capabilities.SUPPORTED);
+            } catch (RemoteException e) {
+                FlitchioLog.e("Unexpected error while trying to negotiate capabilities");
+                serviceCapabilities = Capabilities.NONE;
+            }
+
+            // The sequence numbers of a previous binding are meaningless to this one
+            deltaBase.clear();
+            deltaSequence = SnapshotDelta.NO_SEQUENCE;
+        }
+
+        FlitchioLog.v("Capabilities used by Flitchio Manager: " + serviceCapabilities);
+    }
+
     /**
      * Register this FlitchioController to the Service. This is a RPC.
      */
@@ -587,7 +1013,52 @@ public class FlitchioController {
         synchronized (lockService) {
             if (flitchioService != null) {
                 try {
-                    flitchioService.registerClient(authToken, clientStub);
+                    // The events sent while unregistered have been missed
+                    stateTable.requestResync();
+
+                    final boolean numberedEvents =
+                            Capabilities.has(serviceCapabilities, Capabilities.EVENT_SEQUENCE);
+                    sequenceChecker = numberedEvents
+                            ? new EventSequenceChecker(missedEventCount, reorderedEventCount)
+                            : null;
+
+                    final boolean managerSkipsDpad =
+                            Capabilities.has(serviceCapabilities, Capabilities.LOCAL_DPAD);
+                    final boolean deriveDpad = managerSkipsDpad || customDpadThresholds;
+                    // If the Manager still sends them, the D-pad events are dropped on reception
+                    final boolean dropReceivedDpad = deriveDpad && !managerSkipsDpad;
+                    dpadDeriver = deriveDpad
+                            ? new DpadDeriver(dpadPressThreshold, dpadReleaseThreshold)
+                            : null;
+
+                    if (eventFilter == null) {
+                        localEventFilter = dropReceivedDpad
+                                ? new LocalEventFilter(null, true)
+                                : null;
+                        flitchioService.registerClient(authToken, clientStub);
+                    } else if (Capabilities.has(serviceCapabilities,
+                            Capabilities.SUBSCRIPTION_FILTER)) {
+                        // The joysticks are needed to derive the D-pad buttons of the filter
+                        int joystickMask = eventFilter.getJoystickMask();
+                        if (deriveDpad) {
+                            joystickMask |= DpadDeriver.getJoystickMask(
+                                    eventFilter.getButtonMask());
+                        }
+
+                        localEventFilter =
+                                dropReceivedDpad || joystickMask != eventFilter.getJoystickMask()
+                                        ? new LocalEventFilter(eventFilter, dropReceivedDpad)
+                                        : null;
+                        flitchioService.registerClientWithFilter(authToken, clientStub,
+                                eventFilter.getButtonMask(), joystickMask,
+                                eventFilter.getMinJoystickDelta(),
+                                eventFilter.getMaxJoystickRate());
+                    } else {
+                        // The Manager sends all the events: they are filtered on reception
+                        localEventFilter = new LocalEventFilter(eventFilter, dropReceivedDpad);
+                        flitchioService.registerClient(authToken, clientStub);
+                    }
+                    clientRegistered = true;
                 } catch (RemoteException e) {
                     FlitchioLog.e("Unexpected error while trying to register");
                 } catch (NullPointerException e) {
@@ -598,12 +1069,67 @@ public class FlitchioController {
         }
     }
 
+    /**
+     * Register this FlitchioController to the Service to receive the status changes. This is a
+     * RPC.
+     */
+    @MainThread
+    private void registerStatusCallback() {
+        synchronized (lockService) {
+            if (flitchioService != null && !statusCallbackRegistered) {
+                try {
+                    flitchioService.registerStatusCallback(authToken, clientStub);
+                    statusCallbackRegistered = true;
+                } catch (RemoteException e) {
+                    FlitchioLog.e("Unexpected error while trying to register the status callback");
+                }
+            }
+        }
+    }
+
+    /**
+     * Unregister this FlitchioController from the status changes. This is a RPC.
+     */
+    @MainThread
+    private void unregisterStatusCallback() {
+        synchronized (lockService) {
+            if (flitchioService != null && statusCallbackRegistered) {
+                try {
+                    flitchioService.unregisterStatusCallback(authToken, clientStub);
+                } catch (RemoteException e) {
+                    FlitchioLog.e("Unexpected error while trying to unregister the status " +
+                            "callback");
+                }
+            }
+            statusCallbackRegistered = false;
+        }
+    }
+
+    /**
+     * Give access to the stub receiving the events from Flitchio Manager, so that the event path
+     * can be driven without the Manager (by the benchmarks for instance).
+     */
+    IFlitchioClient getClientStub() {
+        return clientStub;
+    }
+
+    /**
+     * Whether the client has to be registered on the Service to receive the events.
+     */
+    private boolean needsEvents() {
+        return eventListener != null || buttonTransitionTracking || joystickHistoryTracking
+                || snapshotReconstruction || recorder != null;
+    }
+
     /**
      * Unregister this FlitchioController from the Service. This is a RPC.
      */
     @MainThread
     private void unregisterClient() {
         synchronized (lockService) {
+            clientRegistered = false;
+            mainThreadHandler.removeCallbacks(dpadRepeatRunnable);
+
             if (flitchioService != null) {
                 try {
                     flitchioService.unregisterClient(authToken, clientStub);
@@ -620,35 +1146,574 @@ public class FlitchioController {
      * Retrieve the latest state of Flitchio as a {@link FlitchioSnapshot}.
      * <strong>Note:</strong> before the status is {@link Status#CONNECTED},
      * the snapshot returned by this method is always empty.
+     * <p>
+     * If the installed Flitchio Manager shares its state in memory, this is a plain memory read
+     * and no IPC is involved. Otherwise, this is a RPC.
+     * <p>
+     * This method allocates a new snapshot at every call. If you poll at a high rate, consider
+     * using {@link #obtainSnapshot(FlitchioSnapshot)} instead.
      *
      * @return The snapshot representing the latest state of Flitchio. It is never null: when
      * the status isn't {@link Status#DISCONNECTED}, you get an empty snapshot
      * instead.
+     * @see #obtainSnapshot(FlitchioSnapshot)
      * @since 0.5.0
      */
     @NonNull
     public FlitchioSnapshot obtainSnapshot() {
-        synchronized (lockService) {
-            try {
-                FlitchioSnapshot snapshot = flitchioService.getSnapshot(authToken);
-                if (snapshot == null) {
-                    return new FlitchioSnapshot();
-                } else {
-                    return snapshot;
-                }
-
-            } catch (RemoteException e) {
-                FlitchioLog.e("Unexpected error while trying to obtain a snapshot");
-                return new FlitchioSnapshot();
+        return obtainSnapshot(new FlitchioSnapshot());
+    }
 
-            } catch (NullPointerException e) {
-                FlitchioLog.w("Binding to Flitchio Manager not yet effective. " +
-                        "Returned snapshot will be empty.");
-                return new FlitchioSnapshot();
-            }
+    /**
+     * Retrieve the latest state of Flitchio into an existing {@link FlitchioSnapshot}.
+     * <strong>Note:</strong> before the status is {@link Status#CONNECTED},
+     * the snapshot filled by this method is always empty.
+     * <p>
+     * This is a variant of {@link #obtainSnapshot()} that lets you reuse the same snapshot at
+     * every iteration of your update loop. If the installed Flitchio Manager shares its state in
+     * memory, this method doesn't allocate anything. Otherwise, the RPC itself still allocates.
+     *
+     * @param reuse The snapshot to fill. Its previous content is overwritten.
+     * @return The snapshot that was passed, holding the latest state of Flitchio.
+     * @see #obtainSnapshot()
+     * @since 0.8.0
+     */
+    @NonNull
+    public FlitchioSnapshot obtainSnapshot(@NonNull FlitchioSnapshot reuse) {
+        if (snapshotReconstruction && clientRegistered) {
+            if (stateTable.takeResyncRequest()) {
+                readSnapshot(reuse);
+                stateTable.resync(reuse);
+            }
+            stateTable.readInto(reuse);
+        } else {
+            SnapshotPrefetcher cache = prefetcher;
+            if (cache == null || !cache.read(reuse)) {
+                readSnapshot(reuse);
+            }
+        }
+
+        // The counters and histories are always empty while the tracking is disabled
+        buttonTransitions.drainInto(reuse);
+        joystickHistory.drainInto(reuse);
+
+        return reuse;
+    }
+
+    /**
+     * Read the state of Flitchio synchronously, bypassing the prefetched snapshots.
+     */
+    void readSnapshot(FlitchioSnapshot reuse) {
+        reuse.setCaptureTime(System.nanoTime());
+
+        SharedSnapshotMemory memory = snapshotMemory;
+        if (memory != null && memory.read(reuse)) {
+            return;
+        }
+        // Otherwise fall back to the RPC
+
+        synchronized (lockService) {
+            if (flitchioService == null) {
+                // Not relying on a NullPointerException here: this is polled at a high rate
+                FlitchioLog.w("Binding to Flitchio Manager not yet effective. " +
+                        "Returned snapshot will be empty.");
+                reuse.clear();
+                return;
+            }
+
+            final long captureTime = reuse.getCaptureTime();
+            try {
+                if (Capabilities.has(serviceCapabilities, Capabilities.DELTA_SNAPSHOT)
+                        && readSnapshotDelta()) {
+                    reuse.set(deltaBase);
+                } else {
+                    FlitchioSnapshot snapshot = flitchioService.getSnapshot(authToken);
+                    if (snapshot == null) {
+                        reuse.clear();
+                    } else {
+                        reuse.set(snapshot);
+                    }
+                }
+                reuse.setCaptureTime(captureTime);
+
+            } catch (RemoteException e) {
+                FlitchioLog.e("Unexpected error while trying to obtain a snapshot");
+                reuse.clear();
+            }
+        }
+    }
+
+    /**
+     * Bring {@link #deltaBase} up to date with the elements that changed since the last call.
+     * Must be called with {@link #lockService} held.
+     *
+     * @return False if the Manager didn't answer with a delta, in which case the full snapshot
+     * must be read instead.
+     */
+    private boolean readSnapshotDelta() throws RemoteException {
+        SnapshotDelta delta = flitchioService.getSnapshotSince(authToken, deltaSequence);
+        if (delta == null) {
+            return false;
+        }
+
+        delta.applyTo(deltaBase);
+        deltaSequence = delta.getSequence();
+        delta.recycle();
+        return true;
+    }
+
+    /**
+     * Retrieve the latest state of Flitchio and write it into the given buffer in one go, as
+     * described in {@link FlitchioSnapshot#writeTo(ByteBuffer)}.
+     * <p>
+     * This is meant for the callers that cross a language boundary, like game engines calling
+     * the SDK through JNI: a single call replaces one call per getter of the snapshot, and the
+     * values can be read natively from a direct buffer. It doesn't allocate anything if Flitchio
+     * Manager shares its state in memory.
+     *
+     * @param out A buffer of at least {@link FlitchioSnapshot#BULK_SIZE} bytes, typically
+     *            obtained once with {@link FlitchioSnapshot#allocateBulkBuffer()}.
+     * @see #obtainSnapshot(FlitchioSnapshot)
+     * @since 0.8.0
+     */
+    public void obtainSnapshot(@NonNull ByteBuffer out) {
+        synchronized (bulkSnapshot) {
+            obtainSnapshot(bulkSnapshot);
+            bulkSnapshot.writeTo(out);
+        }
+    }
+
+    /**
+     * Retrieve the latest state of all the Flitchios connected to the device into an existing
+     * {@link MultiDeviceSnapshot}, in a single call whatever the number of Flitchios. Use it for
+     * local multiplayer games, along with {@link InputEvent#getDeviceId()} to tell the events of
+     * the players apart.
+     * <p>
+     * If the installed Flitchio Manager handles only one Flitchio, the snapshot describes a
+     * single device, with the state returned by {@link #obtainSnapshot(FlitchioSnapshot)}. The
+     * other methods of this class always describe device 0.
+     *
+     * @param reuse The snapshot to fill. Its previous content is overwritten.
+     * @return The snapshot that was passed, holding the latest state of all the devices.
+     * @since 0.8.0
+     */
+    @NonNull
+    public MultiDeviceSnapshot obtainMultiDeviceSnapshot(@NonNull MultiDeviceSnapshot reuse) {
+        synchronized (lockService) {
+            if (flitchioService != null
+                    && Capabilities.has(serviceCapabilities, Capabilities.MULTI_DEVICE)) {
+                try {
+                    MultiDeviceSnapshot snapshot =
+                            flitchioService.getMultiDeviceSnapshot(authToken);
+                    if (snapshot != null) {
+                        reuse.set(snapshot);
+                        return reuse;
+                    }
+                } catch (RemoteException e) {
+                    FlitchioLog.e("Unexpected error while trying to obtain a multi-device " +
+                            "snapshot");
+                    reuse.clear();
+                    return reuse;
+                }
+            }
+        }
+
+        // The Manager handles a single device: the counters of the trackers are left untouched
+        synchronized (singleDeviceSnapshot) {
+            readSnapshot(singleDeviceSnapshot);
+            reuse.setSingleDevice(currentStatus.code == Status.CONNECTED, singleDeviceSnapshot);
+        }
+        return reuse;
+    }
+
+    /**
+     * Restrict the events received by this controller to the given subset. By default, all the
+     * events are received.
+     * <p>
+     * If the installed Flitchio Manager supports it, the events rejected by the filter are never
+     * sent to your app, which saves IPC and wake-ups. Otherwise, they are dropped as soon as they
+     * are received. In both cases, the filter applies to everything built from the events: your
+     * {@link FlitchioEventListener}, and the features enabled with
+     * {@link #setButtonTransitionTracking(boolean)}, {@link #setJoystickHistoryTracking(boolean)},
+     * {@link #setSnapshotReconstruction(boolean)} and {@link #startRecording(File)}.
+     * The snapshots obtained from Flitchio Manager are not filtered.
+     * <p>
+     * This method must be called before {@link #onResume()} (or one of its other versions) to
+     * take effect.
+     *
+     * @param filter The events to receive, or null to receive all of them.
+     * @since 0.8.0
+     */
+    @MainThread
+    public void setEventFilter(@Nullable EventFilter filter) {
+        this.eventFilter = filter;
+    }
+
+    /**
+     * Set when the D-pad buttons ({@link InputElement.Button.DpadButton}) are pressed and released
+     * according to the position of their joystick.
+     * <p>
+     * If the installed Flitchio Manager supports it, the events of the D-pad buttons are not sent
+     * to your app: the controller derives them from the joystick events, which halves the
+     * traffic when a joystick moves. Otherwise, calling this method makes the controller derive
+     * them anyway, with your thresholds, and ignore the ones sent by Flitchio Manager.
+     * <p>
+     * A direction is pressed when the joystick goes beyond {@code pressThreshold} on its axis, and
+     * released when it comes back under {@code releaseThreshold}. The gap between the two avoids
+     * flickering when the joystick is held around the threshold. The snapshots obtained from
+     * Flitchio Manager keep using its own thresholds.
+     * <p>
+     * Like the other buttons, a held direction repeats after 500ms and then every 50ms (see
+     * {@link ButtonEvent}), with the latest position of the joystick as pressure: no event is
+     * sent when only the pressure changes.
+     * <p>
+     * This method must be called before {@link #onResume()} (or one of its other versions) to
+     * take effect.
+     *
+     * @param pressThreshold   From 0.0 to 1.0. The default is 0.5.
+     * @param releaseThreshold From 0.0 to {@code pressThreshold}. The default is 0.4.
+     * @since 0.8.0
+     */
+    @MainThread
+    public void setDpadThresholds(float pressThreshold, float releaseThreshold) {
+        if (releaseThreshold < 0.0f || releaseThreshold > pressThreshold
+                || pressThreshold > 1.0f) {
+            throw new IllegalArgumentException("Thresholds must be such that " +
+                    "0.0 <= releaseThreshold <= pressThreshold <= 1.0");
+        }
+
+        this.customDpadThresholds = true;
+        this.dpadPressThreshold = pressThreshold;
+        this.dpadReleaseThreshold = releaseThreshold;
+    }
+
+    /**
+     * Enable or disable the reconstruction of the snapshots from the events. It is disabled by
+     * default.
+     * <p>
+     * With reconstruction enabled, the controller receives the button and joystick events even
+     * if you didn't register a {@link FlitchioEventListener}, and applies them to its own copy of
+     * the state of Flitchio. {@link #obtainSnapshot(FlitchioSnapshot)} (and its other versions)
+     * then returns that copy, without any IPC: your polling code and your event listener see the
+     * same state. The copy is resynchronised with Flitchio Manager when the controller starts
+     * receiving the events, and whenever the events reveal that some of them have been missed.
+     * <p>
+     * This method must be called before {@link #onResume()} (or one of its other versions) to
+     * take effect. While the controller doesn't receive the events, for instance after
+     * {@link #onPause()}, the snapshots are obtained from Flitchio Manager as usual.
+     *
+     * @param enabled True to reconstruct the snapshots from the events.
+     * @since 0.8.0
+     */
+    @MainThread
+    public void setSnapshotReconstruction(boolean enabled) {
+        this.snapshotReconstruction = enabled;
+        stateTable.requestResync();
+    }
+
+    /**
+     * Start refreshing the state of Flitchio at a fixed rate on a background thread, so that
+     * {@link #obtainSnapshot(FlitchioSnapshot)} (and its other versions) returns the latest
+     * refreshed state in constant time, without blocking.
+     * <p>
+     * This is meant for the threads that must never block, like render threads, when Flitchio
+     * Manager doesn't share its state in memory: each refresh is then a binder call, done on the
+     * background thread instead of the caller's. In exchange, the state you get can be up to one
+     * refresh period old. Check {@link FlitchioSnapshot#getAgeNanos()} if it matters to you.
+     * <p>
+     * If the latest refreshed state is older than {@code maxStalenessMillis} (for instance because
+     * the background thread has been descheduled), {@code obtainSnapshot()} reads the state
+     * synchronously instead, as if prefetching were disabled.
+     * <p>
+     * If you already prefetch, the previous prefetching is stopped first.
+     *
+     * @param refreshRateHz      How many times per second the state is refreshed.
+     * @param maxStalenessMillis The maximum age of the state returned by {@code obtainSnapshot()}.
+     * @see #stopSnapshotPrefetching()
+     * @since 0.8.0
+     */
+    @MainThread
+    public void startSnapshotPrefetching(int refreshRateHz, long maxStalenessMillis) {
+        if (refreshRateHz <= 0) {
+            throw new IllegalArgumentException("The refresh rate must be positive");
+        }
+
+        stopSnapshotPrefetching();
+        prefetcher = SnapshotPrefetcher.start(this, refreshRateHz,
+                maxStalenessMillis * 1000L * 1000L);
+    }
+
+    /**
+     * Stop the prefetching started with {@link #startSnapshotPrefetching(int, long)}: the
+     * snapshots are read synchronously again. Nothing happens if prefetching isn't enabled.
+     *
+     * @since 0.8.0
+     */
+    @MainThread
+    public void stopSnapshotPrefetching() {
+        SnapshotPrefetcher stopped = prefetcher;
+        if (stopped == null) {
+            return;
+        }
+
+        prefetcher = null;
+        stopped.stop();
+    }
+
+    /**
+     * Enable or disable the recycling of the events passed to your {@link FlitchioEventListener}.
+     * It is disabled by default.
+     * <p>
+     * When recycling is enabled, the {@link ButtonEvent}s and {@link JoystickEvent}s are taken
+     * from a pool and given back to it as soon as your callback returns, like
+     * {@link android.view.MotionEvent}s. This avoids allocating objects for every event, but
+     * <strong>you must not keep a reference to an event after your callback returns</strong>.
+     * If you need to, keep a copy obtained with {@link ButtonEvent#obtain(ButtonEvent)} or
+     * {@link JoystickEvent#obtain(JoystickEvent)}: you own the copy and you should call
+     * {@link InputEvent#recycle()} on it when you are done with it.
+     *
+     * @param enabled True to recycle the events after dispatching them.
+     * @see #setStrictRecycling(boolean)
+     * @since 0.8.0
+     */
+    public void setEventRecycling(boolean enabled) {
+        this.eventRecycling = enabled;
+    }
+
+    /**
+     * Enable or disable the counting of the presses and releases of the buttons between two
+     * polls. It is disabled by default.
+     * <p>
+     * When you poll Flitchio with {@link #obtainSnapshot()}, a button may be pressed and released
+     * between two polls: you then never see it in the state
+     * {@link FlitchioSnapshot#STATE_PRESSING}. With tracking enabled, the controller receives the
+     * button events even if you didn't register a {@link FlitchioEventListener}, and every
+     * snapshot you obtain tells how many times each button has been pressed and released since
+     * the previous one, for instance with
+     * {@link FlitchioSnapshot#wasButtonPressed(InputElement.Button)}. You can then poll at your
+     * frame rate without missing any press.
+     * <p>
+     * This method must be called before {@link #onResume()} (or one of its other versions) to
+     * take effect.
+     *
+     * @param enabled True to count the presses and releases of the buttons.
+     * @since 0.8.0
+     */
+    @MainThread
+    public void setButtonTransitionTracking(boolean enabled) {
+        this.buttonTransitionTracking = enabled;
+
+        if (!enabled) {
+            buttonTransitions.reset();
+        }
+    }
+
+    /**
+     * Enable or disable the history of the positions of the joysticks between two polls. It is
+     * disabled by default.
+     * <p>
+     * When you poll Flitchio with {@link #obtainSnapshot()}, you only get the latest position of
+     * each joystick. With the history enabled, the controller receives the joystick events even
+     * if you didn't register a {@link FlitchioEventListener}, and every snapshot you obtain also
+     * holds the positions each joystick went through since the previous one, up to
+     * {@link FlitchioSnapshot#HISTORY_CAPACITY}. See
+     * {@link FlitchioSnapshot#getHistorySize(InputElement.Joystick)}.
+     * <p>
+     * This method must be called before {@link #onResume()} (or one of its other versions) to
+     * take effect.
+     *
+     * @param enabled True to keep the history of the positions of the joysticks.
+     * @since 0.8.0
+     */
+    @MainThread
+    public void setJoystickHistoryTracking(boolean enabled) {
+        this.joystickHistoryTracking = enabled;
+
+        if (!enabled) {
+            joystickHistory.reset();
         }
     }
 
+    /**
+     * Enable or disable the measurement of the latency of the events dispatched to your
+     * {@link FlitchioEventListener}. It is disabled by default.
+     * <p>
+     * When enabled, each event is timestamped when this app receives it from Flitchio Manager,
+     * when it is taken from the queue to be dispatched and when your callback returns. The
+     * resulting durations are aggregated in histograms that you can retrieve with
+     * {@link #obtainLatencyMetrics(LatencyMetrics)}. Measuring doesn't allocate anything, but it
+     * reads the clock three times per event.
+     *
+     * @param enabled True to measure the latencies.
+     * @see LatencyMetrics
+     * @since 0.8.0
+     */
+    public void setLatencyMetricsEnabled(boolean enabled) {
+        this.latencyMetricsEnabled = enabled;
+    }
+
+    /**
+     * Retrieve the latencies measured since the creation of this controller or the last call to
+     * {@link #resetLatencyMetrics()}. See {@link #setLatencyMetricsEnabled(boolean)}.
+     *
+     * @param reuse The metrics to fill. Their previous content is overwritten.
+     * @return The metrics that were passed.
+     * @since 0.8.0
+     */
+    @NonNull
+    public LatencyMetrics obtainLatencyMetrics(@NonNull LatencyMetrics reuse) {
+        reuse.set(LatencyMetrics.STAGE_BINDER, binderLatency);
+        reuse.set(LatencyMetrics.STAGE_QUEUE, queueLatency);
+        reuse.set(LatencyMetrics.STAGE_LISTENER, listenerLatency);
+        return reuse;
+    }
+
+    /**
+     * Forget the latencies measured so far.
+     *
+     * @since 0.8.0
+     */
+    public void resetLatencyMetrics() {
+        binderLatency.reset();
+        queueLatency.reset();
+        listenerLatency.reset();
+    }
+
+    /**
+     * Start recording all the button and joystick events received by this controller into the
+     * given file, in a compact binary format. The file can be replayed later in your tests, for
+     * instance to reproduce a bug or to run a performance test with real input.
+     * <p>
+     * The events are written by a background thread, so that recording never slows down the
+     * dispatch of the events. If you already record, the previous recording is stopped first.
+     * <p>
+     * The controller receives the events even if you didn't register a
+     * {@link FlitchioEventListener}. This method must be called before {@link #onResume()} (or
+     * one of its other versions) to take effect.
+     *
+     * @param file The file to write. It is overwritten if it exists.
+     * @throws IOException If the file can't be created.
+     * @see #stopRecording()
+     * @since 0.8.0
+     */
+    @MainThread
+    public void startRecording(@NonNull File file) throws IOException {
+        stopRecording();
+        recorder = InputRecorder.start(file);
+    }
+
+    /**
+     * Stop the recording started with {@link #startRecording(File)} and close the file. Nothing
+     * happens if no recording is in progress.
+     *
+     * @since 0.8.0
+     */
+    @MainThread
+    public void stopRecording() {
+        InputRecorder stopped = recorder;
+        if (stopped == null) {
+            return;
+        }
+
+        recorder = null;
+        stopped.stop();
+
+        if (stopped.getDroppedEventCount() > 0) {
+            FlitchioLog.w(stopped.getDroppedEventCount() + " events could not be recorded");
+        }
+    }
+
+    /**
+     * Enable or disable the coalescing of joystick moves. It is disabled by default.
+     * <p>
+     * When your {@link FlitchioEventListener} is slower than the rate of events, the events keep
+     * piling up and the positions of the joysticks it receives get older and older. With
+     * coalescing enabled, only the newest of the pending {@link InputEvent#ACTION_MOVE} events of
+     * each joystick is dispatched, so that your listener always catches up with the current
+     * position. The {@link InputEvent#ACTION_DOWN} and {@link InputEvent#ACTION_UP} events are
+     * never skipped, and moves are never merged across them. Button events are not affected.
+     *
+     * @param enabled True to skip the joystick moves superseded by a newer pending one.
+     * @see #getCoalescedEventCount()
+     * @since 0.8.0
+     */
+    public void setJoystickMoveCoalescing(boolean enabled) {
+        this.joystickMoveCoalescing = enabled;
+    }
+
+    /**
+     * Retrieve the number of joystick moves that have been skipped since this controller was
+     * created, because a newer move of the same joystick was pending.
+     *
+     * @return The number of coalesced events.
+     * @see #setJoystickMoveCoalescing(boolean)
+     * @since 0.8.0
+     */
+    public long getCoalescedEventCount() {
+        return coalescedEventCount.get();
+    }
+
+    /**
+     * Enable or disable the strict recycling mode, for debugging purposes. It is disabled by
+     * default.
+     * <p>
+     * In strict mode, any access to an event that has been recycled throws an
+     * {@link IllegalStateException}, which helps you find the places where your app keeps events
+     * beyond their lifetime. Recycled events are then never reused, so this mode should not be
+     * enabled in release builds.
+     *
+     * @param enabled True to detect the use of recycled events.
+     * @see #setEventRecycling(boolean)
+     * @since 0.8.0
+     */
+    public static void setStrictRecycling(boolean enabled) {
+        InputEvent.setStrictRecycling(enabled);
+    }
+
+    /**
+     * Retrieve the number of events that have been dropped since this controller was created,
+     * because your {@link FlitchioEventListener} didn't keep up with the rate of events and too
+     * many events were waiting to be dispatched.
+     *
+     * @return The number of dropped events.
+     * @since 0.8.0
+     */
+    public long getDroppedEventCount() {
+        return droppedEventCount.get();
+    }
+
+    /**
+     * Retrieve the number of events that Flitchio Manager sent to this controller but that never
+     * arrived, since this controller was created. Events can be lost by the system when it is
+     * under heavy load. This requires a version of Flitchio Manager that numbers the events:
+     * otherwise, the count stays at 0.
+     * <p>
+     * When events are lost or reordered, the snapshots reconstructed from the events (see
+     * {@link #setSnapshotReconstruction(boolean)}) are resynchronised with Flitchio Manager at the
+     * next poll.
+     *
+     * @return The number of missed events.
+     * @see #getReorderedEventCount()
+     * @since 0.8.0
+     */
+    public long getMissedEventCount() {
+        return missedEventCount.get();
+    }
+
+    /**
+     * Retrieve the number of events that arrived after a more recent event, since this controller
+     * was created. Such events are still dispatched to your {@link FlitchioEventListener}. Like
+     * {@link #getMissedEventCount()}, this requires a version of Flitchio Manager that numbers the
+     * events.
+     *
+     * @return The number of reordered events.
+     * @see #getMissedEventCount()
+     * @since 0.8.0
+     */
+    public long getReorderedEventCount() {
+        return reorderedEventCount.get();
+    }
+
     /**
      * Retrieve the current status of this controller. To get notified of status changes, pass a
      * {@link FlitchioStatusListener} in {@link #onCreate(FlitchioStatusListener)}.
@@ -676,103 +1741,606 @@ public class FlitchioController {
         fireCurrentStatus();
     }
 
-    @MainThread
+    /**
+     * Pass the current status to the listener: directly on the main thread, or through
+     * {@link #statusRunnable} from any other thread.
+     */
     private void fireCurrentStatus() {
         if (statusListener == null) {
             FlitchioLog.v("Not firing current status: there's no listener");
             return;
         }
 
-        mainThreadHandler.post(new StatusRunnable(currentStatus));
+        if (Looper.myLooper() == mainThreadHandler.getLooper()) {
+            statusListener.onFlitchioStatusChanged(currentStatus);
+        } else {
+            mainThreadHandler.post(statusRunnable);
+        }
     }
 
     /**
      * Stub that receives the IPC callbacks from the Service and presents them to the client
      * ({@link FlitchioEventListener}) the right way and in the right thread.
+     * The events are copied into the {@link EventRing} of the current {@link EventDrainer}, with
+     * neither lock nor allocation: this is the producer side of the ring.
+     * <p>
+     * When the D-pad buttons are derived, their repeats are produced on the main thread by
+     * {@link DpadRepeatRunnable}: both producers then hold the lock of the {@link DpadDeriver},
+     * so that there is still one producer at a time.
      */
-    private class IFlitchioClientStub extends IFlitchioClient.Stub {
+    private class IFlitchioClientStub extends IFlitchioClient.Stub
+            implements DpadDeriver.Listener {
 
         @Override
         @BinderThread
         public void onButtonEvent(ButtonEvent event) throws RemoteException {
-            synchronized (lockListener) {
-                if (eventListenerThreadHandler != null) {
-                    eventListenerThreadHandler.post(new ButtonEventRunnable(event));
+            DpadDeriver deriver = dpadDeriver;
+            if (deriver == null) {
+                receiveButtonEvent(event);
+                return;
+            }
+
+            synchronized (deriver) {
+                receiveButtonEvent(event);
+            }
+        }
+
+        @BinderThread
+        private void receiveButtonEvent(ButtonEvent event) {
+            checkSequence(event.sequence);
+
+            LocalEventFilter filter = localEventFilter;
+            if (isKnownDevice(event.deviceId)
+                    && (filter == null || filter.acceptReceivedButton(event.source.code))) {
+                onButton(event.deviceId, event.source.code, event.getFirstDownTime(),
+                        event.eventTime, event.flaggedAction, event.getPressure(),
+                        event.getRepeatCount(), measureReceipt());
+                scheduleDrain();
+            }
+
+            // The event has been copied and it isn't referenced anywhere else
+            event.recycle();
+        }
 
+        /**
+         * Derived from the joystick events when {@link #dpadDeriver} is set, right after their
+         * joystick event, or repeated by {@link DpadRepeatRunnable}. The latency of these events
+         * isn't measured: it is the latency of their joystick event.
+         */
+        @Override
+        public void onDpadEvent(int deviceId, int buttonCode, long firstDownTime, long eventTime,
+                                int action, float pressure, int repeatCount) {
+            LocalEventFilter filter = localEventFilter;
+            if (filter == null || filter.acceptButton(buttonCode)) {
+                onButton(deviceId, buttonCode, firstDownTime, eventTime, action, pressure,
+                        repeatCount, 0L);
+            }
+
+            if (action == InputEvent.ACTION_DOWN) {
+                // The pending repeat, if any, may come after the first repeat of this press
+                DpadDeriver deriver = dpadDeriver;
+                if (deriver != null) {
+                    mainThreadHandler.removeCallbacks(dpadRepeatRunnable);
+                    mainThreadHandler.postAtTime(dpadRepeatRunnable,
+                            deriver.getNextRepeatTime());
                 }
             }
         }
 
+        /**
+         * Only called by Managers that agreed on {@link Capabilities#STATUS_CALLBACK}, if the
+         * status callback is registered.
+         */
+        @Override
+        @BinderThread
+        public void onStatusChanged(int status) throws RemoteException {
+            switch (status) {
+                case Status.CONNECTED:
+                    mainThreadHandler.post(connectedCallback);
+                    break;
+                case Status.DISCONNECTED:
+                    mainThreadHandler.post(disconnectedCallback);
+                    break;
+                default:
+                    FlitchioLog.w("Unexpected status received from Flitchio Manager: " + status);
+                    break;
+            }
+        }
+
+        /**
+         * Detect the events lost or reordered before the given one, and resynchronise the state
+         * built from the events if so.
+         */
+        @BinderThread
+        private void checkSequence(int sequence) {
+            EventSequenceChecker checker = sequenceChecker;
+            if (checker != null && !checker.check(sequence)) {
+                FlitchioLog.w("Events lost or reordered on the way from Flitchio Manager: " +
+                        "the state will be resynchronised");
+                stateTable.requestResync();
+            }
+        }
+
+        /**
+         * @return True if the given device can be handled by this version of the SDK.
+         */
+        private boolean isKnownDevice(int deviceId) {
+            return deviceId >= 0 && deviceId < MultiDeviceSnapshot.MAX_DEVICES;
+        }
+
+        /**
+         * Make sure that the events just written into the ring will be dispatched.
+         */
+        private void scheduleDrain() {
+            EventDrainer drainer = eventDrainer;
+            if (drainer != null) {
+                drainer.schedule();
+            }
+        }
+
+        /**
+         * Take into account a button event accepted by the filter. Only the events of device 0
+         * are taken into account by the snapshots of
+         * {@link FlitchioController#obtainSnapshot(FlitchioSnapshot)} and by the recordings:
+         * the events of the other devices are only dispatched to the listener.
+         * The caller must then call {@link #scheduleDrain()}.
+         */
+        @BinderThread
+        private void onButton(int deviceId, int buttonCode, long firstDownTime, long eventTime,
+                              int flaggedAction, float pressure, int repeatCount,
+                              long receiptTime) {
+            if (buttonTransitionTracking && deviceId == 0) {
+                buttonTransitions.onButtonEvent(buttonCode, flaggedAction);
+            }
+            if (snapshotReconstruction && deviceId == 0) {
+                stateTable.onButtonEvent(buttonCode, firstDownTime, eventTime, flaggedAction,
+                        pressure, repeatCount);
+            }
+
+            if (receiptTime != 0L) {
+                recordBinderLatency(eventTime, receiptTime);
+            }
+
+            InputRecorder currentRecorder = recorder;
+            if (currentRecorder != null && deviceId == 0) {
+                currentRecorder.onButtonEvent(buttonCode, firstDownTime, eventTime,
+                        flaggedAction, pressure, repeatCount);
+            }
+
+            EventDrainer drainer = eventDrainer;
+            if (drainer != null && !drainer.ring.offerButton(deviceId, buttonCode,
+                    firstDownTime, eventTime, flaggedAction, pressure, repeatCount, receiptTime)) {
+                droppedEventCount.incrementAndGet();
+            }
+        }
+
         @Override
         @BinderThread
         public void onJoystickEvent(JoystickEvent event) throws RemoteException {
-            // TODO link the chain of events in order to receive ButtonEvents for Dpad only if the
-            // corresponding joystick has been ignored
+            DpadDeriver deriver = dpadDeriver;
+            if (deriver == null) {
+                receiveJoystickEvent(event);
+                return;
+            }
 
-            synchronized (lockListener) {
-                if (eventListenerThreadHandler != null) {
-                    eventListenerThreadHandler.post(new JoystickEventRunnable(event));
+            synchronized (deriver) {
+                receiveJoystickEvent(event);
+            }
+        }
+
+        @BinderThread
+        private void receiveJoystickEvent(JoystickEvent event) {
+            checkSequence(event.sequence);
+
+            if (isKnownDevice(event.deviceId)) {
+                onJoystick(event.deviceId, event.source.code, event.eventTime,
+                        event.flaggedAction, event.getX(), event.getY(), measureReceipt());
+                scheduleDrain();
+            }
+
+            // The event has been copied and it isn't referenced anywhere else
+            event.recycle();
+        }
+
+        /**
+         * Take into account a joystick event, then the D-pad events derived from it, so that the
+         * listener receives them in that order. See {@link #onButton}.
+         */
+        @BinderThread
+        private void onJoystick(int deviceId, int joystickCode, long eventTime,
+                                int flaggedAction, float x, float y, long receiptTime) {
+            LocalEventFilter filter = localEventFilter;
+            if (filter == null || filter.acceptJoystick(deviceId, joystickCode, eventTime,
+                    flaggedAction, x, y)) {
+                if (joystickHistoryTracking && deviceId == 0) {
+                    joystickHistory.onJoystickEvent(joystickCode, eventTime, x, y);
+                }
+                if (snapshotReconstruction && deviceId == 0) {
+                    stateTable.onJoystickEvent(joystickCode, eventTime, flaggedAction, x, y);
+                }
+
+                if (receiptTime != 0L) {
+                    recordBinderLatency(eventTime, receiptTime);
+                }
+
+                InputRecorder currentRecorder = recorder;
+                if (currentRecorder != null && deviceId == 0) {
+                    currentRecorder.onJoystickEvent(joystickCode, eventTime, flaggedAction, x, y);
                 }
+
+                EventDrainer drainer = eventDrainer;
+                if (drainer != null && !drainer.ring.offerJoystick(deviceId, joystickCode,
+                        eventTime, flaggedAction, x, y, receiptTime)) {
+                    droppedEventCount.incrementAndGet();
+                }
+            }
+
+            // Even if the joystick itself is filtered out: its D-pad buttons may not be
+            DpadDeriver deriver = dpadDeriver;
+            if (deriver != null) {
+                deriver.onJoystickEvent(deviceId, joystickCode, eventTime, flaggedAction, x, y,
+                        this);
             }
         }
+
+        /**
+         * Only called by Managers that agreed on {@link Capabilities#EVENT_BATCH}: the whole
+         * batch is handed over to the listener thread at once.
+         */
+        @Override
+        @BinderThread
+        public void onEventBatch(EventBatch batch) throws RemoteException {
+            for (int i = 0; i < batch.size(); i++) {
+                checkSequence(batch.getSequence(i));
+            }
+
+            DpadDeriver deriver = dpadDeriver;
+            if (deriver != null) {
+                // The derived events must be interleaved with the events of the batch
+                synchronized (deriver) {
+                    onEventBatchRecords(batch);
+                }
+                batch.recycle();
+                return;
+            }
+
+            LocalEventFilter filter = localEventFilter;
+            if (filter != null) {
+                batch.retainAccepted(filter);
+            }
+
+            final long receiptTime = measureReceipt();
+            if (receiptTime != 0L) {
+                for (int i = 0; i < batch.size(); i++) {
+                    recordBinderLatency(batch.getEventTime(i), receiptTime);
+                }
+            }
+
+            if (buttonTransitionTracking) {
+                for (int i = 0; i < batch.size(); i++) {
+                    if (batch.isKnown(i) && batch.getDeviceId(i) == 0
+                            && batch.getKind(i) == EventBatch.KIND_BUTTON) {
+                        buttonTransitions.onButtonEvent(batch.getCode(i),
+                                batch.getFlaggedAction(i));
+                    }
+                }
+            }
+            if (joystickHistoryTracking) {
+                for (int i = 0; i < batch.size(); i++) {
+                    if (batch.isKnown(i) && batch.getDeviceId(i) == 0
+                            && batch.getKind(i) == EventBatch.KIND_JOYSTICK) {
+                        joystickHistory.onJoystickEvent(batch.getCode(i), batch.getEventTime(i),
+                                batch.getX(i), batch.getY(i));
+                    }
+                }
+            }
+            if (snapshotReconstruction) {
+                stateTable.onEventBatch(batch);
+            }
+
+            InputRecorder currentRecorder = recorder;
+            if (currentRecorder != null) {
+                currentRecorder.onEventBatch(batch);
+            }
+
+            EventDrainer drainer = eventDrainer;
+            if (drainer != null) {
+                for (int i = 0; i < batch.size(); i++) {
+                    if (batch.isKnown(i) && !batch.offerTo(drainer.ring, i, receiptTime)) {
+                        droppedEventCount.incrementAndGet();
+                    }
+                }
+                drainer.schedule();
+            }
+
+            batch.recycle();
+        }
+
+        /**
+         * Take into account the events of a batch one by one, like single events.
+         */
+        @BinderThread
+        private void onEventBatchRecords(EventBatch batch) {
+            final long receiptTime = measureReceipt();
+            final LocalEventFilter filter = localEventFilter;
+
+            for (int i = 0; i < batch.size(); i++) {
+                if (!batch.isKnown(i)) {
+                    continue;
+                }
+
+                if (batch.getKind(i) == EventBatch.KIND_BUTTON) {
+                    if (filter == null || filter.acceptReceivedButton(batch.getCode(i))) {
+                        onButton(batch.getDeviceId(i), batch.getCode(i),
+                                batch.getFirstDownTime(i), batch.getEventTime(i),
+                                batch.getFlaggedAction(i), batch.getPressure(i),
+                                batch.getRepeatCount(i), receiptTime);
+                    }
+                } else {
+                    onJoystick(batch.getDeviceId(i), batch.getCode(i), batch.getEventTime(i),
+                            batch.getFlaggedAction(i), batch.getX(i), batch.getY(i),
+                            receiptTime);
+                }
+            }
+            scheduleDrain();
+        }
     }
 
     /**
-     * Runnable callback for status changed (connected/disconnected) events.
+     * Dispatch the events received since the previous call to the listener passed to
+     * {@link #onResumeManualDispatch(FlitchioEventListener)}, on the calling thread. It returns
+     * once all of them have been dispatched. It does nothing if this controller has been resumed
+     * with another variant of {@link #onResume()}.
+     *
+     * @see #onResumeManualDispatch(FlitchioEventListener)
+     * @since 0.8.0
      */
-    @MainThread
-    private class StatusRunnable implements Runnable {
-        private final Status status;
+    public void dispatchPendingEvents() {
+        EventDrainer drainer = eventDrainer;
+        if (drainer instanceof ManualEventDrainer) {
+            drainer.run();
+        }
+    }
+
+    /**
+     * @return The current time in {@link System#nanoTime()} time base if the latencies are
+     * measured, 0 otherwise.
+     */
+    private long measureReceipt() {
+        return latencyMetricsEnabled ? System.nanoTime() : 0L;
+    }
+
+    private void recordBinderLatency(long eventTime, long receiptTime) {
+        // Event times are in the uptimeMillis() time base, which is the same clock as nanoTime()
+        binderLatency.record(receiptTime - eventTime * 1000000L);
+    }
 
-        public StatusRunnable(Status status) {
-            this.status = status;
+    /**
+     * Dispatch the events waiting in the ring of the given drainer to the listener.
+     * This is the consumer side of the ring.
+     */
+    private void drainEvents(EventDrainer drainer, long frameTimeNanos) {
+        final EventRing ring = drainer.ring;
+
+        synchronized (lockListener) {
+            // A drainer that has been replaced only discards what's left in its ring
+            final boolean current = (drainer == eventDrainer);
+
+            if (current && frameTimeNanos != NO_FRAME
+                    && eventListener instanceof FlitchioFrameListener) {
+                ((FlitchioFrameListener) eventListener).onFlitchioFrameStart(frameTimeNanos);
+            }
+
+            final long start = ring.getReadIndex();
+            final long end = ring.getWriteIndex();
+
+            final boolean coalescing = current && joystickMoveCoalescing;
+            if (coalescing) {
+                coalescedEventCount.addAndGet(ring.coalesceJoystickMoves(start, end));
+            }
+
+            for (long i = start; i < end; i++) {
+                if (coalescing && ring.isCoalesced(i)) {
+                    ring.release(i + 1);
+                    continue;
+                }
+                if (current && eventListener != null) {
+                    dispatchEvent(ring, i);
+                }
+                ring.release(i + 1);
+            }
+        }
+    }
+
+    /**
+     * Dispatch the event held in the given slot of the ring to the listener.
+     */
+    private void dispatchEvent(EventRing ring, long index) {
+        final long receiptTime = ring.getReceiptTime(index);
+        final boolean measured = receiptTime != 0L && latencyMetricsEnabled;
+
+        long dequeueTime = 0L;
+        if (measured) {
+            dequeueTime = System.nanoTime();
+            queueLatency.record(dequeueTime - receiptTime);
         }
 
+        if (ring.getKind(index) == EventRing.KIND_BUTTON) {
+            ButtonEvent event = ring.obtainButtonEvent(index);
+            eventListener.onFlitchioButtonEvent(event.getSource(), event);
+            releaseEvent(event);
+        } else {
+            JoystickEvent event = ring.obtainJoystickEvent(index);
+            eventListener.onFlitchioJoystickEvent(event.getSource(), event);
+            releaseEvent(event);
+        }
+
+        if (measured) {
+            listenerLatency.record(System.nanoTime() - dequeueTime);
+        }
+    }
+
+    /**
+     * Give an event back to the pool once it has been dispatched, if recycling is enabled.
+     * Otherwise the listener may have kept a reference to it.
+     */
+    private void releaseEvent(InputEvent<?> event) {
+        if (eventRecycling) {
+            event.recycle();
+        }
+    }
+
+    /**
+     * Runnable firing the current status on the main thread, when it has been set from another
+     * thread. The status is read when it runs: the listener always gets the latest one.
+     */
+    private class StatusRunnable implements Runnable {
         @Override
+        @MainThread
         public void run() {
             if (statusListener != null) {
-                statusListener.onFlitchioStatusChanged(status);
+                statusListener.onFlitchioStatusChanged(currentStatus);
             }
         }
     }
 
     /**
-     * Runnable callback for button events. It will be run on the listener thread.
+     * Runnable reporting a status change received through
+     * {@link IFlitchioClient#onStatusChanged(int)}, posted by the binder thread. The change is
+     * then reported like any other one, so that the listener is called in the order in which
+     * the current status is set: being on the main thread, it reaches the listener directly.
      */
-    private class ButtonEventRunnable implements Runnable {
-        private final ButtonEvent event;
+    private class StatusCallbackRunnable implements Runnable {
+        private final int statusCode;
 
-        public ButtonEventRunnable(ButtonEvent event) {
-            this.event = event;
+        StatusCallbackRunnable(int statusCode) {
+            this.statusCode = statusCode;
         }
 
         @Override
+        @MainThread
         public void run() {
-            synchronized (lockListener) {
-                if (eventListener != null) {
-                    eventListener.onFlitchioButtonEvent(event.getSource(), event);
+            // The callback may have been unregistered since it has been posted
+            if (statusListening) {
+                reportStatus(Status.of(statusCode));
+            }
+        }
+    }
+
+    /**
+     * Runnable sending the repeats of the D-pad buttons derived by {@link #dpadDeriver} while
+     * the client is registered. It reposts itself as long as a direction is pressed.
+     */
+    private class DpadRepeatRunnable implements Runnable {
+        @Override
+        @MainThread
+        public void run() {
+            DpadDeriver deriver = dpadDeriver;
+            if (deriver == null || !clientRegistered) {
+                return;
+            }
+
+            synchronized (deriver) {
+                final long nextRepeatTime = deriver.repeat(SystemClock.uptimeMillis(), clientStub);
+                clientStub.scheduleDrain();
+
+                // Under the lock, so that the time posted on a press isn't overwritten
+                if (nextRepeatTime != DpadDeriver.NO_REPEAT) {
+                    mainThreadHandler.removeCallbacks(this);
+                    mainThreadHandler.postAtTime(this, nextRepeatTime);
                 }
             }
         }
     }
 
     /**
-     * Runnable callback for joystick events. It will be run on the listener thread.
+     * Runnable draining an {@link EventRing} on the listener thread. It is posted only when it
+     * is not already pending, so there is at most one post for any number of events.
      */
-    private class JoystickEventRunnable implements Runnable {
-        private final JoystickEvent event;
+    private class EventDrainer implements Runnable {
+        final EventRing ring;
+        private final Handler handler;
+        final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        EventDrainer(EventRing ring, Handler handler) {
+            this.ring = ring;
+            this.handler = handler;
+        }
+
+        /**
+         * Make sure that the ring will be drained after the events just written into it.
+         */
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                post();
+            }
+        }
 
-        public JoystickEventRunnable(JoystickEvent event) {
-            this.event = event;
+        void post() {
+            handler.post(this);
         }
 
         @Override
         public void run() {
-            synchronized (lockListener) {
-                if (eventListener != null) {
-                    eventListener.onFlitchioJoystickEvent(event.getSource(), event);
-                }
-            }
+            // Reset before reading the ring: any event published from now on triggers a new post
+            scheduled.set(false);
+            drainEvents(this, NO_FRAME);
+        }
+    }
+
+    /**
+     * Drainer that waits for the start of the next frame to dispatch the pending events.
+     */
+    private class FrameEventDrainer extends EventDrainer implements Choreographer.FrameCallback {
+        private final Choreographer choreographer;
+
+        FrameEventDrainer(EventRing ring, Choreographer choreographer) {
+            super(ring, null);
+            this.choreographer = choreographer;
+        }
+
+        @Override
+        void post() {
+            choreographer.postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            scheduled.set(false);
+            drainEvents(this, frameTimeNanos);
+        }
+    }
+
+    /**
+     * Drainer that dispatches the pending events on the render thread of a
+     * {@link GLSurfaceView}, between two frames.
+     */
+    private class RenderThreadEventDrainer extends EventDrainer {
+        private final GLSurfaceView glSurfaceView;
+
+        RenderThreadEventDrainer(EventRing ring, GLSurfaceView glSurfaceView) {
+            super(ring, null);
+            this.glSurfaceView = glSurfaceView;
+        }
+
+        @Override
+        void post() {
+            glSurfaceView.queueEvent(this);
+        }
+    }
+
+    /**
+     * Drainer that leaves the pending events in the ring until
+     * {@link #dispatchPendingEvents()} is called.
+     */
+    private class ManualEventDrainer extends EventDrainer {
+        ManualEventDrainer(EventRing ring) {
+            super(ring, null);
+        }
+
+        @Override
+        void post() {
+            // Nothing to post: the ring is drained by dispatchPendingEvents()
         }
     }
 }
@@ -6,6 +6,11 @@ import android.os.Handler;
  * Listener of Flitchio events: button state changed, joystick position changed. A listener must be
  * registered with {@link FlitchioController#onResume(FlitchioEventListener)} to receive events.
  *
+ * <p/>
+ * If you enabled {@link FlitchioController#setEventRecycling(boolean)}, the events passed to
+ * the callbacks below are only valid until the callback returns. See {@link InputEvent} for the
+ * rules that apply to recycled events.
+ *
  * @since 0.6.0
  */
 public interface FlitchioEventListener {
@@ -0,0 +1,27 @@
+package com.supenta.flitchio.sdk;
+
+import android.view.Choreographer;
+
+/**
+ * Optional extension of {@link FlitchioEventListener} for listeners registered with
+ * {@link FlitchioController#onResumeFrameAligned(FlitchioEventListener, Choreographer)}: the
+ * events received since the previous frame are dispatched in one burst at the start of each frame,
+ * and this listener is told when such a burst begins.
+ *
+ * @since 0.8.0
+ */
+public interface FlitchioFrameListener extends FlitchioEventListener {
+
+    /**
+     * Called at the start of a frame, right before the button and joystick events received since
+     * the previous frame are dispatched. It is not called for frames without events.
+     * <p/>
+     * The time of each event is still available with {@link InputEvent#getEventTime()}.
+     *
+     * @param frameTimeNanos The time at which the frame started rendering, as given to
+     *                       {@link Choreographer.FrameCallback#doFrame(long)}, in the
+     *                       {@link System#nanoTime()} time base.
+     * @since 0.8.0
+     */
+    void onFlitchioFrameStart(long frameTimeNanos);
+}
@@ -2,6 +2,10 @@ package com.supenta.flitchio.sdk;
 
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.support.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * Object describing a consistent state of Flitchio at a given moment. It behaves partly like an
@@ -32,6 +36,36 @@ import android.os.Parcelable;
  * For each joystick, you can access its X and Y coordinates in the current snapshot with
  * {@link #getJoystickX(InputElement.Joystick)} and {@link #getJoystickY(InputElement.Joystick)}.
  * The value retrieved is in the interval [-1.0 ; 1.0].
+ * <p/>
+ * <h3>Bulk access</h3>
+ * <p/>
+ * Calling the getters one by one is costly across a language boundary, for instance through JNI
+ * from a game engine. {@link #writeTo(ByteBuffer)} writes the whole snapshot as an array of
+ * floats instead, which can be read natively after a single call.
+ * <p/>
+ * <h3>Reusing snapshots</h3>
+ * <p/>
+ * If you poll at a high rate, you can avoid allocating a new snapshot at every poll by passing
+ * the same snapshot again and again to {@link FlitchioController#obtainSnapshot(FlitchioSnapshot)}.
+ * <p/>
+ * <h3>Presses and releases between polls</h3>
+ * <p/>
+ * A button can be pressed and released between two polls, in which case the states
+ * {@link #STATE_PRESSING} and {@link #STATE_RELEASING} are never seen. If you enable
+ * {@link FlitchioController#setButtonTransitionTracking(boolean)}, the snapshot also tells how
+ * many times each button has been pressed and released since the previous poll, with
+ * {@link #wasButtonPressed(InputElement.Button)} and
+ * {@link #getButtonPressCount(InputElement.Button)}.
+ * <p/>
+ * <h3>Joystick history</h3>
+ * <p/>
+ * Like the historical API of {@link android.view.MotionEvent}, a snapshot can also hold all the
+ * positions each joystick went through since the previous poll, if you enable
+ * {@link FlitchioController#setJoystickHistoryTracking(boolean)}. Iterate from 0 to
+ * {@link #getHistorySize(InputElement.Joystick)} with
+ * {@link #getHistoricalJoystickX(InputElement.Joystick, int)},
+ * {@link #getHistoricalJoystickY(InputElement.Joystick, int)} and
+ * {@link #getHistoricalEventTime(InputElement.Joystick, int)}.
  *
  * @see ButtonEvent
  * @see JoystickEvent
@@ -39,9 +73,10 @@ import android.os.Parcelable;
  */
 public final class FlitchioSnapshot implements Parcelable {
 
-    // TODO a polling client may miss one of the states if the snapshot is updated faster than the
+    // A polling client may miss one of the states if the snapshot is updated faster than the
     // polling process. It can lead to unexpected behaviour, esp. if it's waiting for STATE_PRESSING
-    // to take some action (that was the case of AngryBots for instance).
+    // to take some action (that was the case of AngryBots for instance). Such clients should
+    // enable FlitchioController#setButtonTransitionTracking() and use wasButtonPressed().
 
     /**
      * State of a button that is being pressed for the first time.
@@ -71,6 +106,42 @@ public final class FlitchioSnapshot implements Parcelable {
      */
     public static final int STATE_RELEASED = InputEvent.ACTION_NONE;
 
+    /**
+     * Maximum number of historical samples kept per joystick between two polls. See
+     * {@link #getHistorySize(InputElement.Joystick)}.
+     *
+     * @since 0.8.0
+     */
+    public static final int HISTORY_CAPACITY = 64;
+
+    /**
+     * First int of a parcel written in the flat format, where the legacy format starts with the
+     * (positive) number of buttons. See {@link #writeToParcel(Parcel, int)}.
+     * KEEP IT SYNCED WITH THE VALUE IN FLITCHIO MANAGER.
+     */
+    static final int FLAT_PARCEL_MAGIC = 0xF17C0000;
+    static final int FLAT_PARCEL_VERSION = 1;
+    static final int FLAT_BUTTON_RECORD_SIZE = 32;
+    static final int FLAT_JOYSTICK_RECORD_SIZE = 24;
+
+    /**
+     * Number of values written for each button by {@link #writeTo(ByteBuffer)}.
+     */
+    static final int BULK_VALUES_PER_BUTTON = 5;
+
+    /**
+     * Number of values written for each joystick by {@link #writeTo(ByteBuffer)}.
+     */
+    static final int BULK_VALUES_PER_JOYSTICK = 2;
+
+    /**
+     * Size in bytes of the content written by {@link #writeTo(ByteBuffer)}.
+     *
+     * @since 0.8.0
+     */
+    public static final int BULK_SIZE = 4 * (InputElement.BUTTONS.length * BULK_VALUES_PER_BUTTON
+            + InputElement.JOYSTICKS.length * BULK_VALUES_PER_JOYSTICK);
+
     /**
      * @hide
      */
@@ -85,12 +156,72 @@ public final class FlitchioSnapshot implements Parcelable {
                 }
             };
 
-    private final ButtonEvent[] buttonEvents;
-    private final JoystickEvent[] joystickEvents;
+    /*
+     * The state is stored as flat primitive arrays indexed by the code of the input element,
+     * rather than as arrays of events: the getters below are then plain array loads.
+     * An element for which there is no data holds neutral values (released, centred).
+     */
+    private final float[] buttonPressure;
+    private final int[] buttonState;
+    private final int[] buttonRepeatCount;
+    private final long[] buttonEventTime;
+    private final long[] buttonFirstDownTime;
+    private final int[] buttonPressCount;
+    private final int[] buttonReleaseCount;
 
-    FlitchioSnapshot() {
-        this.buttonEvents = new ButtonEvent[InputElement.BUTTONS.length];
-        this.joystickEvents = new JoystickEvent[InputElement.JOYSTICKS.length];
+    private final float[] joystickX;
+    private final float[] joystickY;
+    private final int[] joystickAction;
+    private final long[] joystickEventTime;
+
+    /*
+     * Samples of joystick N are stored from index N * HISTORY_CAPACITY, oldest first.
+     */
+    private final int[] joystickHistorySize;
+    private final float[] joystickHistoryX;
+    private final float[] joystickHistoryY;
+    private final long[] joystickHistoryEventTime;
+
+    /**
+     * When the state held by this snapshot has been read, in {@link System#nanoTime()} time
+     * base. Not parcelled: it is only meaningful in the process that read the state.
+     */
+    private long captureTime = 0L;
+
+    /**
+     * Whether {@link #writeToParcel(Parcel, int)} uses the flat format. Not parcelled.
+     */
+    private boolean flatParcel = false;
+
+    /**
+     * Create an empty snapshot, typically to be filled later by
+     * {@link FlitchioController#obtainSnapshot(FlitchioSnapshot)}.
+     *
+     * @since 0.8.0
+     */
+    public FlitchioSnapshot() {
+        final int buttons = InputElement.BUTTONS.length;
+        final int joysticks = InputElement.JOYSTICKS.length;
+
+        buttonPressure = new float[buttons];
+        buttonState = new int[buttons];
+        buttonRepeatCount = new int[buttons];
+        buttonEventTime = new long[buttons];
+        buttonFirstDownTime = new long[buttons];
+        buttonPressCount = new int[buttons];
+        buttonReleaseCount = new int[buttons];
+
+        joystickX = new float[joysticks];
+        joystickY = new float[joysticks];
+        joystickAction = new int[joysticks];
+        joystickEventTime = new long[joysticks];
+
+        joystickHistorySize = new int[joysticks];
+        joystickHistoryX = new float[joysticks * HISTORY_CAPACITY];
+        joystickHistoryY = new float[joysticks * HISTORY_CAPACITY];
+        joystickHistoryEventTime = new long[joysticks * HISTORY_CAPACITY];
+
+        clear();
     }
 
     /**
@@ -103,15 +234,37 @@ public final class FlitchioSnapshot implements Parcelable {
         /*
          * It's important to have an array of float as argument rather than multiple float
          * arguments (one per button). This way, we ensure backward compatibility with whatever
-         * comes from the service. /!\ We don't make a copy of the array here because a new
-         * allocation is done every time.
+         * comes from the service.
          */
-        this.buttonEvents = buttonEvents;
-        this.joystickEvents = joystickEvents;
+        this();
+
+        for (int i = 0; i < buttonPressure.length && i < buttonEvents.length; i++) {
+            ButtonEvent event = buttonEvents[i];
+            if (event != null) {
+                setButton(i, event.getFirstDownTime(), event.eventTime, event.getAction(),
+                        event.getPressure(), event.getRepeatCount());
+            }
+        }
+        for (int i = 0; i < joystickX.length && i < joystickEvents.length; i++) {
+            JoystickEvent event = joystickEvents[i];
+            if (event != null) {
+                setJoystick(i, event.eventTime, event.getAction(), event.getX(), event.getY());
+            }
+        }
     }
 
     private FlitchioSnapshot(Parcel in) {
-        int buttonEventsInParcel = in.readInt();
+        this();
+
+        final int first = in.readInt();
+        if (first == FLAT_PARCEL_MAGIC) {
+            readFlatParcel(in);
+        } else {
+            readLegacyParcel(in, first);
+        }
+    }
+
+    private void readLegacyParcel(Parcel in, int buttonEventsInParcel) {
         int joystickEventsInParcel = in.readInt();
 
         if (buttonEventsInParcel < InputElement.BUTTONS.length) {
@@ -121,47 +274,247 @@ public final class FlitchioSnapshot implements Parcelable {
             throw new RuntimeException("Invalid array length: less joysticks than expected");
         }
 
-
-        buttonEvents = new ButtonEvent[InputElement.BUTTONS.length];
-        joystickEvents = new JoystickEvent[InputElement.JOYSTICKS.length];
-
+        /*
+         * The events are written as with Parcel#writeParcelable(): each one is preceded by the
+         * name of its class, or by a null string if there's no event. We decode the fields
+         * directly into the arrays rather than going through readParcelable(), which would look
+         * up the CREATOR by reflection and allocate an event object for each element.
+         * KEEP IT SYNCED WITH ButtonEvent#writeToParcel AND JoystickEvent#writeToParcel.
+         */
 
         // We read manually the Parcel, consuming the extra info sent
         // and not handled by this version of the SDK
 
         // BUTTONS
-        for (int i = 0; i < InputElement.BUTTONS.length; i++) {
-            buttonEvents[i] = in.readParcelable(ButtonEvent.class.getClassLoader());
-            buttonEventsInParcel--;
-        }
-        while (buttonEventsInParcel > 0) {
-            in.readParcelable(ButtonEvent.class.getClassLoader());
-            buttonEventsInParcel--;
+        for (int i = 0; i < buttonEventsInParcel; i++) {
+            if (in.readString() == null) {
+                continue;
+            }
+
+            in.readInt(); // Code of the source: same as the position
+            long eventTime = in.readLong();
+            int action = in.readInt() & ~InputEvent.FLAG_DISPATCH;
+            float pressure = in.readFloat();
+            int repeatCount = in.readInt();
+            long firstDownTime = in.readLong();
+
+            if (i < InputElement.BUTTONS.length) {
+                setButton(i, firstDownTime, eventTime, action, pressure, repeatCount);
+            }
         }
 
         // JOYSTICKS
-        for (int i = 0; i < InputElement.JOYSTICKS.length; i++) {
-            joystickEvents[i] = in.readParcelable(JoystickEvent.class.getClassLoader());
-            joystickEventsInParcel--;
+        for (int i = 0; i < joystickEventsInParcel; i++) {
+            if (in.readString() == null) {
+                continue;
+            }
+
+            in.readInt(); // Code of the source: same as the position
+            long eventTime = in.readLong();
+            int action = in.readInt() & ~InputEvent.FLAG_DISPATCH;
+            float x = in.readFloat();
+            float y = in.readFloat();
+
+            if (i < InputElement.JOYSTICKS.length) {
+                setJoystick(i, eventTime, action, x, y);
+            }
         }
-        while (joystickEventsInParcel > 0) {
-            in.readParcelable(JoystickEvent.class.getClassLoader());
-            joystickEventsInParcel--;
+    }
+
+    private void readFlatParcel(Parcel in) {
+        in.readInt(); // Version: the record sizes are enough to read any later version
+        final int buttonRecordSize = in.readInt();
+        final int joystickRecordSize = in.readInt();
+        final int buttonRecords = in.readInt();
+        final int joystickRecords = in.readInt();
+
+        // The records of the elements unknown to this version are skipped altogether
+        final int buttons = Math.min(buttonRecords, InputElement.BUTTONS.length);
+        final int joysticks = Math.min(joystickRecords, InputElement.JOYSTICKS.length);
+
+        final int buttonsStart = in.dataPosition();
+        for (int i = 0; i < buttons; i++) {
+            in.setDataPosition(buttonsStart + i * buttonRecordSize);
+            if (in.readInt() == 0) {
+                continue; // No event for this button
+            }
+
+            long eventTime = in.readLong();
+            int action = in.readInt() & ~InputEvent.FLAG_DISPATCH;
+            float pressure = in.readFloat();
+            int repeatCount = in.readInt();
+            long firstDownTime = in.readLong();
+            setButton(i, firstDownTime, eventTime, action, pressure, repeatCount);
         }
+
+        final int joysticksStart = buttonsStart + buttonRecords * buttonRecordSize;
+        for (int i = 0; i < joysticks; i++) {
+            in.setDataPosition(joysticksStart + i * joystickRecordSize);
+            if (in.readInt() == 0) {
+                continue; // No event for this joystick
+            }
+
+            long eventTime = in.readLong();
+            int action = in.readInt() & ~InputEvent.FLAG_DISPATCH;
+            float x = in.readFloat();
+            float y = in.readFloat();
+            setJoystick(i, eventTime, action, x, y);
+        }
+
+        in.setDataPosition(joysticksStart + joystickRecords * joystickRecordSize);
     }
 
     /**
      * @hide
      */
     public void writeToParcel(Parcel out, int flags) {
-        out.writeInt(buttonEvents.length);
-        out.writeInt(joystickEvents.length);
+        if (flatParcel) {
+            writeFlatParcel(out);
+            return;
+        }
+
+        /*
+         * Same format as if each element was written with Parcel#writeParcelable(), so that it can
+         * be read by older versions of the SDK.
+         * KEEP IT SYNCED WITH ButtonEvent#writeToParcel AND JoystickEvent#writeToParcel.
+         */
+        out.writeInt(buttonPressure.length);
+        out.writeInt(joystickX.length);
+
+        final String buttonEventClass = ButtonEvent.class.getName();
+        for (int i = 0; i < buttonPressure.length; i++) {
+            out.writeString(buttonEventClass);
+            out.writeInt(i);
+            out.writeLong(buttonEventTime[i]);
+            out.writeInt(buttonState[i]);
+            out.writeFloat(buttonPressure[i]);
+            out.writeInt(buttonRepeatCount[i]);
+            out.writeLong(buttonFirstDownTime[i]);
+        }
+
+        final String joystickEventClass = JoystickEvent.class.getName();
+        for (int i = 0; i < joystickX.length; i++) {
+            out.writeString(joystickEventClass);
+            out.writeInt(i);
+            out.writeLong(joystickEventTime[i]);
+            out.writeInt(joystickAction[i]);
+            out.writeFloat(joystickX[i]);
+            out.writeFloat(joystickY[i]);
+        }
+    }
 
-        for (ButtonEvent buttonEvent : buttonEvents) {
-            out.writeParcelable(buttonEvent, flags);
+    /**
+     * Flat format, written instead of the legacy one when the client agreed on
+     * {@link Capabilities#FLAT_SNAPSHOT}. There are no class names and every record has a fixed
+     * size, announced in the header so that the fields appended by later versions can be skipped.
+     * <pre>
+     * HEADER
+     *   int  {@link #FLAT_PARCEL_MAGIC}
+     *   int  format version ({@link #FLAT_PARCEL_VERSION})
+     *   int  size of a button record in bytes
+     *   int  size of a joystick record in bytes
+     *   int  number of button records
+     *   int  number of joystick records
+     * BUTTON RECORD
+     *   int   1 if the record holds an event, 0 otherwise
+     *   long  event time
+     *   int   action
+     *   float pressure
+     *   int   repeat count
+     *   long  first down time
+     * JOYSTICK RECORD
+     *   int   1 if the record holds an event, 0 otherwise
+     *   long  event time
+     *   int   action
+     *   float x
+     *   float y
+     * </pre>
+     * KEEP IT SYNCED WITH THE VALUE IN FLITCHIO MANAGER.
+     */
+    private void writeFlatParcel(Parcel out) {
+        out.writeInt(FLAT_PARCEL_MAGIC);
+        out.writeInt(FLAT_PARCEL_VERSION);
+        out.writeInt(FLAT_BUTTON_RECORD_SIZE);
+        out.writeInt(FLAT_JOYSTICK_RECORD_SIZE);
+        out.writeInt(buttonPressure.length);
+        out.writeInt(joystickX.length);
+
+        for (int i = 0; i < buttonPressure.length; i++) {
+            out.writeInt(buttonEventTime[i] != 0L ? 1 : 0);
+            out.writeLong(buttonEventTime[i]);
+            out.writeInt(buttonState[i]);
+            out.writeFloat(buttonPressure[i]);
+            out.writeInt(buttonRepeatCount[i]);
+            out.writeLong(buttonFirstDownTime[i]);
         }
-        for (JoystickEvent joystickEvent : joystickEvents) {
-            out.writeParcelable(joystickEvent, flags);
+
+        for (int i = 0; i < joystickX.length; i++) {
+            out.writeInt(joystickEventTime[i] != 0L ? 1 : 0);
+            out.writeLong(joystickEventTime[i]);
+            out.writeInt(joystickAction[i]);
+            out.writeFloat(joystickX[i]);
+            out.writeFloat(joystickY[i]);
+        }
+    }
+
+    /**
+     * Not to be used by 3rd-party developers.
+     * <p>
+     * Choose the format written by {@link #writeToParcel(Parcel, int)}. The flat format must only
+     * be used for the clients that agreed on {@link Capabilities#FLAT_SNAPSHOT}: older versions of
+     * the SDK can't read it.
+     *
+     * @hide
+     */
+    public void setFlatParcel(boolean flatParcel) {
+        this.flatParcel = flatParcel;
+    }
+
+    /**
+     * Allocate a direct buffer that can hold the content written by {@link #writeTo(ByteBuffer)},
+     * in the native byte order.
+     *
+     * @since 0.8.0
+     */
+    @NonNull
+    public static ByteBuffer allocateBulkBuffer() {
+        return ByteBuffer.allocateDirect(BULK_SIZE).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Write the whole content of this snapshot as a sequence of 32-bit floats, in the byte order of
+     * the buffer, from index 0 of the buffer (its position is ignored and left unchanged):
+     * <pre>
+     * for each button of {@link InputElement#BUTTONS}, in order:
+     *   state ({@link #getButtonState(int)})
+     *   pressure ({@link #getButtonPressure(int)})
+     *   repeat count
+     *   press count ({@link #getButtonPressCount(int)})
+     *   release count ({@link #getButtonReleaseCount(int)})
+     * for each joystick of {@link InputElement#JOYSTICKS}, in order:
+     *   X ({@link #getJoystickX(int)})
+     *   Y ({@link #getJoystickY(int)})
+     * </pre>
+     * The integer values are exactly represented as floats.
+     *
+     * @param out A buffer of at least {@link #BULK_SIZE} bytes, typically obtained with
+     *            {@link #allocateBulkBuffer()}.
+     * @since 0.8.0
+     */
+    public void writeTo(@NonNull ByteBuffer out) {
+        int index = 0;
+        for (int i = 0; i < buttonPressure.length; i++) {
+            out.putFloat(index, buttonState[i]);
+            out.putFloat(index + 4, buttonPressure[i]);
+            out.putFloat(index + 8, buttonRepeatCount[i]);
+            out.putFloat(index + 12, buttonPressCount[i]);
+            out.putFloat(index + 16, buttonReleaseCount[i]);
+            index += 4 * BULK_VALUES_PER_BUTTON;
+        }
+        for (int i = 0; i < joystickX.length; i++) {
+            out.putFloat(index, joystickX[i]);
+            out.putFloat(index + 4, joystickY[i]);
+            index += 4 * BULK_VALUES_PER_JOYSTICK;
         }
     }
 
@@ -173,6 +526,168 @@ public final class FlitchioSnapshot implements Parcelable {
         return 0;
     }
 
+    /**
+     * Overwrite the state of the given button in this snapshot.
+     */
+    void setButton(int buttonCode, long firstDownTime, long eventTime, int state,
+                   float pressure, int repeatCount) {
+        buttonPressure[buttonCode] = pressure;
+        buttonState[buttonCode] = state;
+        buttonRepeatCount[buttonCode] = repeatCount;
+        buttonEventTime[buttonCode] = eventTime;
+        buttonFirstDownTime[buttonCode] = firstDownTime;
+    }
+
+    /**
+     * Overwrite the number of presses and releases of the given button since the previous poll.
+     */
+    void setButtonTransitions(int buttonCode, int pressCount, int releaseCount) {
+        buttonPressCount[buttonCode] = pressCount;
+        buttonReleaseCount[buttonCode] = releaseCount;
+    }
+
+    /**
+     * Overwrite the position of the given joystick in this snapshot.
+     */
+    void setJoystick(int joystickCode, long eventTime, int action, float x, float y) {
+        joystickX[joystickCode] = x;
+        joystickY[joystickCode] = y;
+        joystickAction[joystickCode] = action;
+        joystickEventTime[joystickCode] = eventTime;
+    }
+
+    /**
+     * Overwrite the number of historical samples of the given joystick.
+     */
+    void setJoystickHistorySize(int joystickCode, int size) {
+        joystickHistorySize[joystickCode] = size;
+    }
+
+    /**
+     * Overwrite the given historical sample of the given joystick.
+     */
+    void setJoystickHistory(int joystickCode, int pos, long eventTime, float x, float y) {
+        final int index = joystickCode * HISTORY_CAPACITY + pos;
+        joystickHistoryX[index] = x;
+        joystickHistoryY[index] = y;
+        joystickHistoryEventTime[index] = eventTime;
+    }
+
+    /**
+     * Copy the content of the given snapshot into this one.
+     */
+    void set(FlitchioSnapshot other) {
+        final int buttons = buttonPressure.length;
+        System.arraycopy(other.buttonPressure, 0, buttonPressure, 0, buttons);
+        System.arraycopy(other.buttonState, 0, buttonState, 0, buttons);
+        System.arraycopy(other.buttonRepeatCount, 0, buttonRepeatCount, 0, buttons);
+        System.arraycopy(other.buttonEventTime, 0, buttonEventTime, 0, buttons);
+        System.arraycopy(other.buttonFirstDownTime, 0, buttonFirstDownTime, 0, buttons);
+        System.arraycopy(other.buttonPressCount, 0, buttonPressCount, 0, buttons);
+        System.arraycopy(other.buttonReleaseCount, 0, buttonReleaseCount, 0, buttons);
+
+        final int joysticks = joystickX.length;
+        System.arraycopy(other.joystickX, 0, joystickX, 0, joysticks);
+        System.arraycopy(other.joystickY, 0, joystickY, 0, joysticks);
+        System.arraycopy(other.joystickAction, 0, joystickAction, 0, joysticks);
+        System.arraycopy(other.joystickEventTime, 0, joystickEventTime, 0, joysticks);
+        System.arraycopy(other.joystickHistorySize, 0, joystickHistorySize, 0, joysticks);
+        System.arraycopy(other.joystickHistoryX, 0, joystickHistoryX, 0, joystickHistoryX.length);
+        System.arraycopy(other.joystickHistoryY, 0, joystickHistoryY, 0, joystickHistoryY.length);
+        System.arraycopy(other.joystickHistoryEventTime, 0, joystickHistoryEventTime, 0,
+                joystickHistoryEventTime.length);
+        captureTime = other.captureTime;
+    }
+
+    /**
+     * Copy the state of the given button from the given snapshot into this one.
+     */
+    void copyButton(FlitchioSnapshot other, int buttonCode) {
+        setButton(buttonCode, other.buttonFirstDownTime[buttonCode],
+                other.buttonEventTime[buttonCode], other.buttonState[buttonCode],
+                other.buttonPressure[buttonCode], other.buttonRepeatCount[buttonCode]);
+    }
+
+    /**
+     * Copy the position of the given joystick from the given snapshot into this one.
+     */
+    void copyJoystick(FlitchioSnapshot other, int joystickCode) {
+        setJoystick(joystickCode, other.joystickEventTime[joystickCode],
+                other.joystickAction[joystickCode], other.joystickX[joystickCode],
+                other.joystickY[joystickCode]);
+    }
+
+    /**
+     * Write the state of the given button as a record of {@link SnapshotDelta}.
+     */
+    void writeButtonRecord(Parcel out, int buttonCode) {
+        out.writeInt(buttonCode);
+        out.writeLong(buttonEventTime[buttonCode]);
+        out.writeInt(buttonState[buttonCode]);
+        out.writeFloat(buttonPressure[buttonCode]);
+        out.writeInt(buttonRepeatCount[buttonCode]);
+        out.writeLong(buttonFirstDownTime[buttonCode]);
+    }
+
+    /**
+     * Write the position of the given joystick as a record of {@link SnapshotDelta}.
+     */
+    void writeJoystickRecord(Parcel out, int joystickCode) {
+        out.writeInt(joystickCode);
+        out.writeLong(joystickEventTime[joystickCode]);
+        out.writeInt(joystickAction[joystickCode]);
+        out.writeFloat(joystickX[joystickCode]);
+        out.writeFloat(joystickY[joystickCode]);
+    }
+
+    long getButtonEventTime(int buttonCode) {
+        return buttonEventTime[buttonCode];
+    }
+
+    long getJoystickEventTime(int joystickCode) {
+        return joystickEventTime[joystickCode];
+    }
+
+    int getButtonRepeatCount(int buttonCode) {
+        return buttonRepeatCount[buttonCode];
+    }
+
+    long getButtonFirstDownTime(int buttonCode) {
+        return buttonFirstDownTime[buttonCode];
+    }
+
+    int getJoystickAction(int joystickCode) {
+        return joystickAction[joystickCode];
+    }
+
+    /**
+     * Reset this snapshot to the empty state.
+     */
+    void clear() {
+        for (int i = 0; i < buttonPressure.length; i++) {
+            clearButton(i);
+        }
+        for (int i = 0; i < joystickX.length; i++) {
+            clearJoystick(i);
+        }
+    }
+
+    /**
+     * Reset the given button to the state of an empty snapshot.
+     */
+    void clearButton(int buttonCode) {
+        setButton(buttonCode, 0L, 0L, STATE_RELEASED, 0.0f, 0);
+        setButtonTransitions(buttonCode, 0, 0);
+    }
+
+    /**
+     * Reset the given joystick to the state of an empty snapshot.
+     */
+    void clearJoystick(int joystickCode) {
+        setJoystick(joystickCode, 0L, InputEvent.ACTION_NONE, 0.0f, 0.0f);
+        setJoystickHistorySize(joystickCode, 0);
+    }
+
     /**
      * Retrieve the pressure of the given button.
      *
@@ -182,11 +697,7 @@ public final class FlitchioSnapshot implements Parcelable {
      */
     // !!! KEEP THE JAVADOC SYNCED WITH ButtonEvent !!!
     public float getButtonPressure(int buttonCode) {
-        if (buttonEvents[buttonCode] != null) {
-            return buttonEvents[buttonCode].getPressure();
-        } else {
-            return 0.0f;
-        }
+        return buttonPressure[buttonCode];
     }
 
     /**
@@ -209,11 +720,7 @@ public final class FlitchioSnapshot implements Parcelable {
      * @since 0.5.0
      */
     public int getButtonState(int buttonCode) {
-        if (buttonEvents[buttonCode] != null) {
-            return buttonEvents[buttonCode].getAction(); // Action will be translated to State
-        } else {
-            return STATE_RELEASED;
-        }
+        return buttonState[buttonCode]; // Action of the last event, translated to State
     }
 
     /**
@@ -228,6 +735,106 @@ public final class FlitchioSnapshot implements Parcelable {
         return getButtonState(button.code);
     }
 
+    /**
+     * Retrieve the number of times the given button has been pressed since the previous poll.
+     * Always 0 unless {@link FlitchioController#setButtonTransitionTracking(boolean)} is enabled.
+     *
+     * @return The number of {@link #STATE_PRESSING} transitions since the previous poll.
+     * @see #getButtonPressCount(InputElement.Button)
+     * @since 0.8.0
+     */
+    public int getButtonPressCount(int buttonCode) {
+        return buttonPressCount[buttonCode];
+    }
+
+    /**
+     * Retrieve the number of times the given button has been pressed since the previous poll.
+     * Always 0 unless {@link FlitchioController#setButtonTransitionTracking(boolean)} is enabled.
+     *
+     * @return The number of {@link #STATE_PRESSING} transitions since the previous poll.
+     * @see #getButtonPressCount(int)
+     * @since 0.8.0
+     */
+    public int getButtonPressCount(InputElement.Button button) {
+        return getButtonPressCount(button.code);
+    }
+
+    /**
+     * Retrieve the number of times the given button has been released since the previous poll.
+     * Always 0 unless {@link FlitchioController#setButtonTransitionTracking(boolean)} is enabled.
+     *
+     * @return The number of {@link #STATE_RELEASING} transitions since the previous poll.
+     * @see #getButtonReleaseCount(InputElement.Button)
+     * @since 0.8.0
+     */
+    public int getButtonReleaseCount(int buttonCode) {
+        return buttonReleaseCount[buttonCode];
+    }
+
+    /**
+     * Retrieve the number of times the given button has been released since the previous poll.
+     * Always 0 unless {@link FlitchioController#setButtonTransitionTracking(boolean)} is enabled.
+     *
+     * @return The number of {@link #STATE_RELEASING} transitions since the previous poll.
+     * @see #getButtonReleaseCount(int)
+     * @since 0.8.0
+     */
+    public int getButtonReleaseCount(InputElement.Button button) {
+        return getButtonReleaseCount(button.code);
+    }
+
+    /**
+     * Check whether the given button has been pressed since the previous poll, even if it has
+     * been released since then.
+     * Always false unless {@link FlitchioController#setButtonTransitionTracking(boolean)} is
+     * enabled.
+     *
+     * @see #wasButtonPressed(InputElement.Button)
+     * @since 0.8.0
+     */
+    public boolean wasButtonPressed(int buttonCode) {
+        return buttonPressCount[buttonCode] > 0;
+    }
+
+    /**
+     * Check whether the given button has been pressed since the previous poll, even if it has
+     * been released since then.
+     * Always false unless {@link FlitchioController#setButtonTransitionTracking(boolean)} is
+     * enabled.
+     *
+     * @see #wasButtonPressed(int)
+     * @since 0.8.0
+     */
+    public boolean wasButtonPressed(InputElement.Button button) {
+        return wasButtonPressed(button.code);
+    }
+
+    /**
+     * Check whether the given button has been released since the previous poll, even if it has
+     * been pressed again since then.
+     * Always false unless {@link FlitchioController#setButtonTransitionTracking(boolean)} is
+     * enabled.
+     *
+     * @see #wasButtonReleased(InputElement.Button)
+     * @since 0.8.0
+     */
+    public boolean wasButtonReleased(int buttonCode) {
+        return buttonReleaseCount[buttonCode] > 0;
+    }
+
+    /**
+     * Check whether the given button has been released since the previous poll, even if it has
+     * been pressed again since then.
+     * Always false unless {@link FlitchioController#setButtonTransitionTracking(boolean)} is
+     * enabled.
+     *
+     * @see #wasButtonReleased(int)
+     * @since 0.8.0
+     */
+    public boolean wasButtonReleased(InputElement.Button button) {
+        return wasButtonReleased(button.code);
+    }
+
     /**
      * Retrieve the X position of the given joystick.
      *
@@ -236,11 +843,7 @@ public final class FlitchioSnapshot implements Parcelable {
      * @since 0.5.0
      */
     public float getJoystickX(int joystickCode) {
-        if (joystickEvents[joystickCode] != null) {
-            return joystickEvents[joystickCode].getX();
-        } else {
-            return 0.0f;
-        }
+        return joystickX[joystickCode];
     }
 
     /**
@@ -262,11 +865,7 @@ public final class FlitchioSnapshot implements Parcelable {
      * @since 0.5.0
      */
     public float getJoystickY(int joystickCode) {
-        if (joystickEvents[joystickCode] != null) {
-            return joystickEvents[joystickCode].getY();
-        } else {
-            return 0.0f;
-        }
+        return joystickY[joystickCode];
     }
 
     /**
@@ -289,11 +888,7 @@ public final class FlitchioSnapshot implements Parcelable {
      * @since 0.5.0
      */
     public float getJoystickAngle(int joystickCode) {
-        if (joystickEvents[joystickCode] != null) {
-            return joystickEvents[joystickCode].getAngle();
-        } else {
-            return 0.0f;
-        }
+        return JoystickEvent.getAngle(joystickX[joystickCode], joystickY[joystickCode]);
     }
 
     /**
@@ -316,11 +911,7 @@ public final class FlitchioSnapshot implements Parcelable {
      * @since 0.5.0
      */
     public float getJoystickDistance(int joystickCode) {
-        if (joystickEvents[joystickCode] != null) {
-            return joystickEvents[joystickCode].getDistance();
-        } else {
-            return 0.0f;
-        }
+        return JoystickEvent.getDistance(joystickX[joystickCode], joystickY[joystickCode]);
     }
 
     /**
@@ -333,4 +924,143 @@ public final class FlitchioSnapshot implements Parcelable {
     public float getJoystickDistance(InputElement.Joystick joystick) {
         return getJoystickDistance(joystick.code);
     }
+
+    /**
+     * Retrieve the number of historical samples of the given joystick, that is the number of
+     * positions it went through since the previous poll, up to {@link #HISTORY_CAPACITY}.
+     * Always 0 unless {@link FlitchioController#setJoystickHistoryTracking(boolean)} is enabled.
+     *
+     * @return The number of historical samples.
+     * @see #getHistorySize(InputElement.Joystick)
+     * @since 0.8.0
+     */
+    public int getHistorySize(int joystickCode) {
+        return joystickHistorySize[joystickCode];
+    }
+
+    /**
+     * Retrieve the number of historical samples of the given joystick, that is the number of
+     * positions it went through since the previous poll, up to {@link #HISTORY_CAPACITY}.
+     * Always 0 unless {@link FlitchioController#setJoystickHistoryTracking(boolean)} is enabled.
+     *
+     * @return The number of historical samples.
+     * @see #getHistorySize(int)
+     * @since 0.8.0
+     */
+    public int getHistorySize(InputElement.Joystick joystick) {
+        return getHistorySize(joystick.code);
+    }
+
+    /**
+     * Retrieve a historical X position of the given joystick.
+     *
+     * @param pos Which historical sample to return, from 0 (the oldest) to
+     *            {@link #getHistorySize(int)} - 1 (the newest).
+     * @return A value ranging from -1.0 to 1.0.
+     * @see #getHistoricalJoystickX(InputElement.Joystick, int)
+     * @since 0.8.0
+     */
+    public float getHistoricalJoystickX(int joystickCode, int pos) {
+        return joystickHistoryX[historyIndex(joystickCode, pos)];
+    }
+
+    /**
+     * Retrieve a historical X position of the given joystick.
+     *
+     * @param pos Which historical sample to return, from 0 (the oldest) to
+     *            {@link #getHistorySize(InputElement.Joystick)} - 1 (the newest).
+     * @return A value ranging from -1.0 to 1.0.
+     * @see #getHistoricalJoystickX(int, int)
+     * @since 0.8.0
+     */
+    public float getHistoricalJoystickX(InputElement.Joystick joystick, int pos) {
+        return getHistoricalJoystickX(joystick.code, pos);
+    }
+
+    /**
+     * Retrieve a historical Y position of the given joystick.
+     *
+     * @param pos Which historical sample to return, from 0 (the oldest) to
+     *            {@link #getHistorySize(int)} - 1 (the newest).
+     * @return A value ranging from -1.0 to 1.0.
+     * @see #getHistoricalJoystickY(InputElement.Joystick, int)
+     * @since 0.8.0
+     */
+    public float getHistoricalJoystickY(int joystickCode, int pos) {
+        return joystickHistoryY[historyIndex(joystickCode, pos)];
+    }
+
+    /**
+     * Retrieve a historical Y position of the given joystick.
+     *
+     * @param pos Which historical sample to return, from 0 (the oldest) to
+     *            {@link #getHistorySize(InputElement.Joystick)} - 1 (the newest).
+     * @return A value ranging from -1.0 to 1.0.
+     * @see #getHistoricalJoystickY(int, int)
+     * @since 0.8.0
+     */
+    public float getHistoricalJoystickY(InputElement.Joystick joystick, int pos) {
+        return getHistoricalJoystickY(joystick.code, pos);
+    }
+
+    /**
+     * Retrieve the time of a historical sample of the given joystick.
+     *
+     * @param pos Which historical sample to return, from 0 (the oldest) to
+     *            {@link #getHistorySize(int)} - 1 (the newest).
+     * @return The time of the event, in the {@link android.os.SystemClock#uptimeMillis()} time
+     * base.
+     * @see #getHistoricalEventTime(InputElement.Joystick, int)
+     * @since 0.8.0
+     */
+    public long getHistoricalEventTime(int joystickCode, int pos) {
+        return joystickHistoryEventTime[historyIndex(joystickCode, pos)];
+    }
+
+    /**
+     * Retrieve the time of a historical sample of the given joystick.
+     *
+     * @param pos Which historical sample to return, from 0 (the oldest) to
+     *            {@link #getHistorySize(InputElement.Joystick)} - 1 (the newest).
+     * @return The time of the event, in the {@link android.os.SystemClock#uptimeMillis()} time
+     * base.
+     * @see #getHistoricalEventTime(int, int)
+     * @since 0.8.0
+     */
+    public long getHistoricalEventTime(InputElement.Joystick joystick, int pos) {
+        return getHistoricalEventTime(joystick.code, pos);
+    }
+
+    void setCaptureTime(long captureTime) {
+        this.captureTime = captureTime;
+    }
+
+    long getCaptureTime() {
+        return captureTime;
+    }
+
+    /**
+     * Retrieve how long ago the state held by this snapshot has been read from Flitchio Manager.
+     * It is close to 0 right after a regular call to
+     * {@link FlitchioController#obtainSnapshot(FlitchioSnapshot)}, but it can be larger when the
+     * snapshot comes from the cache of
+     * {@link FlitchioController#startSnapshotPrefetching(int, long)}.
+     *
+     * @return The age in nanoseconds, or {@link Long#MAX_VALUE} if this snapshot has never been
+     * filled by a controller.
+     * @since 0.8.0
+     */
+    public long getAgeNanos() {
+        if (captureTime == 0L) {
+            return Long.MAX_VALUE;
+        }
+        return System.nanoTime() - captureTime;
+    }
+
+    private int historyIndex(int joystickCode, int pos) {
+        if (pos < 0 || pos >= joystickHistorySize[joystickCode]) {
+            throw new IndexOutOfBoundsException("Invalid historical position: " + pos);
+        }
+        return joystickCode * HISTORY_CAPACITY + pos;
+    }
 }
@@ -32,6 +32,10 @@ public interface FlitchioStatusListener {
      * </ul>
      * <strong>To get all the callbacks, it is crucial to respect the lifecycle of the
      * {@link FlitchioController}, with onCreate(), onResume(), onPause() and onDestroy().</strong>
+     * <p>
+     * It is always called on the main thread, right when the status changes: the
+     * {@link Status#BINDING} callback for instance happens before
+     * {@link FlitchioController#onCreate(FlitchioStatusListener)} returns.
      *
      * @param status The new connection status: one of the {@link Status} constants.
      * @since 0.7.0
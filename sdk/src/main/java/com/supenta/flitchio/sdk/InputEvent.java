@@ -6,6 +6,20 @@ import android.os.Parcel;
  * Base class for button and joystick events that are fired in listening mode.
  * <p/>
  * Each event has one source that is an {@link InputElement} and one action ({@link #getAction()}).
+ * <p/>
+ * <h3>Recycling</h3>
+ * <p/>
+ * Like {@link android.view.MotionEvent}s, events can be pooled and reused in order to avoid
+ * allocating objects for every event. This is enabled with
+ * {@link FlitchioController#setEventRecycling(boolean)}. In that case, the events passed to your
+ * {@link FlitchioEventListener} are owned by the SDK and recycled as soon as the callback
+ * returns: you must not keep a reference to them. If you need an event after the callback, keep
+ * a copy obtained with {@link ButtonEvent#obtain(ButtonEvent)} or
+ * {@link JoystickEvent#obtain(JoystickEvent)}, and call {@link #recycle()} on the copy when you
+ * are done with it.
+ * <p/>
+ * To detect events used after having been recycled, enable
+ * {@link FlitchioController#setStrictRecycling(boolean)} during development.
  *
  * @since 0.5.0
  */
@@ -54,19 +68,72 @@ public abstract class InputEvent<T extends InputElement> {
     public static final int FLAG_DISPATCH = 4;          // 0100
 
     /**
+     * Not to be used by 3rd-party developers.
+     * This flag is used to mark that the parcel of the event ends with its sequence number. It is
+     * only set by the Managers that agreed on {@link Capabilities#EVENT_SEQUENCE}, and it is
+     * removed from the action as soon as the event is read.
+     *
      * @hide
      */
-    protected final T source;
+    public static final int FLAG_HAS_SEQUENCE = 8;      // 1000
 
     /**
+     * Not to be used by 3rd-party developers.
+     * This flag is used to mark that the parcel of the event ends with the ID of its device,
+     * after the sequence number if any. It is only set by the Managers that agreed on
+     * {@link Capabilities#MULTI_DEVICE}, for the devices other than 0, and it is removed from the
+     * action as soon as the event is read.
+     *
      * @hide
      */
-    protected final long eventTime;
+    public static final int FLAG_HAS_DEVICE_ID = 16;    // 1 0000
+
+    /**
+     * Flags announcing the fields that end the parcel of an event.
+     */
+    static final int TRAILER_FLAGS = FLAG_HAS_SEQUENCE | FLAG_HAS_DEVICE_ID;
+
+    /**
+     * When true, recycled events are never reused and any access to them throws an exception.
+     */
+    private static volatile boolean strictRecycling = false;
+
+    /*
+     * The three fields below are not final since 0.8.0, so that the pooled events can be
+     * overwritten when they are reused. Subclasses must treat them as read-only: an event is
+     * still immutable for the code it is passed to.
+     */
 
     /**
      * @hide
      */
-    protected final int flaggedAction; // ACTION_* + potential FLAG_DISPATCH
+    protected T source;
+
+    /**
+     * @hide
+     */
+    protected long eventTime;
+
+    /**
+     * @hide
+     */
+    protected int flaggedAction; // ACTION_* + potential FLAG_DISPATCH
+
+    /**
+     * Position of this event in the stream of events sent to this client, or 0 if the Manager
+     * doesn't number the events.
+     */
+    int sequence = 0;
+
+    /**
+     * ID of the device that caused this event. See {@link #getDeviceId()}.
+     */
+    int deviceId = 0;
+
+    /**
+     * True between {@link #recycle()} and the next time this event is obtained from the pool.
+     */
+    boolean recycled = false;
 
     protected InputEvent(T source, long eventTime, int action) {
         this.source = source;
@@ -80,6 +147,72 @@ public abstract class InputEvent<T extends InputElement> {
         flaggedAction = in.readInt();
     }
 
+    static void setStrictRecycling(boolean enabled) {
+        strictRecycling = enabled;
+    }
+
+    static boolean isStrictRecycling() {
+        return strictRecycling;
+    }
+
+    /**
+     * Overwrite the data of this event, so that the object can be reused.
+     */
+    void set(T source, long eventTime, int flaggedAction) {
+        this.source = source;
+        this.eventTime = eventTime;
+        this.flaggedAction = flaggedAction;
+        this.sequence = 0;
+        this.deviceId = 0;
+        this.recycled = false;
+    }
+
+    /**
+     * Read the fields that end the parcel of this event, according to the
+     * {@link #TRAILER_FLAGS} of its action as written in the parcel.
+     * KEEP IT SYNCED WITH {@link #writeTrailer(Parcel)}.
+     */
+    final void readTrailer(Parcel in, int parcelledAction) {
+        sequence = (parcelledAction & FLAG_HAS_SEQUENCE) != 0 ? in.readInt() : 0;
+        deviceId = (parcelledAction & FLAG_HAS_DEVICE_ID) != 0 ? in.readInt() : 0;
+    }
+
+    /**
+     * Mark this event as recycled.
+     *
+     * @return True if this event can be given back to the pool, false if it must be left to the
+     * garbage collector (strict mode).
+     */
+    boolean markRecycled() {
+        if (recycled) {
+            throw new IllegalStateException(this + " recycled twice");
+        }
+        recycled = true;
+
+        return !strictRecycling;
+    }
+
+    /**
+     * In strict mode, throw if this event is used after having been recycled.
+     */
+    final void checkNotRecycled() {
+        if (strictRecycling && recycled) {
+            throw new IllegalStateException(
+                    "This event has been recycled and must not be used anymore");
+        }
+    }
+
+    /**
+     * Recycle this event, so that it can be reused by the SDK.
+     * You must only call this on an event that you own, i.e. that you obtained with
+     * {@link ButtonEvent#obtain(ButtonEvent)} or {@link JoystickEvent#obtain(JoystickEvent)}.
+     * The event must not be used anymore after calling this method.
+     *
+     * @throws IllegalStateException if the event has already been recycled.
+     * @since 0.8.0
+     */
+    public abstract void recycle();
+
     /**
      * Retrieve the source of this event, that is the {@link InputElement} that caused it.
      *
@@ -87,6 +220,7 @@ public abstract class InputEvent<T extends InputElement> {
      * @since 0.5.0
      */
     public T getSource() {
+        checkNotRecycled();
         return source;
     }
 
@@ -99,6 +233,7 @@ public abstract class InputEvent<T extends InputElement> {
      * @since 0.5.0
      */
     public long getEventTime() {
+        checkNotRecycled();
         return eventTime;
     }
 
@@ -110,16 +245,51 @@ public abstract class InputEvent<T extends InputElement> {
      * @since 0.5.0
      */
     public int getAction() {
+        checkNotRecycled();
         return flaggedAction & ~FLAG_DISPATCH;
     }
 
+    /**
+     * Retrieve the ID of the Flitchio that caused this event, when several of them are connected.
+     * It is the ID used by {@link MultiDeviceSnapshot}.
+     *
+     * @return A value ranging from 0 to {@link MultiDeviceSnapshot#MAX_DEVICES} - 1. Always 0 if
+     * only one Flitchio is handled by the installed Flitchio Manager.
+     * @since 0.8.0
+     */
+    public int getDeviceId() {
+        checkNotRecycled();
+        return deviceId;
+    }
+
     /**
      * @hide
      */
     protected void writeToParcel(Parcel dest, int flags) {
+        int parcelledAction = flaggedAction;
+        if (sequence != 0) {
+            parcelledAction |= FLAG_HAS_SEQUENCE;
+        }
+        if (deviceId != 0) {
+            parcelledAction |= FLAG_HAS_DEVICE_ID;
+        }
+
         dest.writeInt(source.code);
         dest.writeLong(eventTime);
-        dest.writeInt(flaggedAction);
+        dest.writeInt(parcelledAction);
+    }
+
+    /**
+     * Write the fields that end the parcel of this event, announced by the action.
+     * KEEP IT SYNCED WITH {@link #readTrailer(Parcel, int)}.
+     */
+    final void writeTrailer(Parcel dest) {
+        if (sequence != 0) {
+            dest.writeInt(sequence);
+        }
+        if (deviceId != 0) {
+            dest.writeInt(deviceId);
+        }
     }
 
     /**
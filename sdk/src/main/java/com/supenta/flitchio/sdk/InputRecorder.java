@@ -0,0 +1,173 @@
+package com.supenta.flitchio.sdk;
+
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records the events received by a controller into an {@link InputRecording} file.
+ * <p>
+ * The events are copied on the binder thread into a preallocated {@link EventRing}, without
+ * lock nor allocation, and written to the file by a background thread. Recording therefore never
+ * stalls the dispatch: if the writer doesn't keep up, the events that don't fit in the ring are
+ * dropped from the recording and counted.
+ */
+final class InputRecorder {
+    private static final int RING_CAPACITY = 4096;
+    private static final int RECORDS_PER_WRITE = 256;
+    private static final long WRITE_PERIOD_NANOS = 10L * 1000L * 1000L;
+
+    private final EventRing ring = new EventRing(RING_CAPACITY);
+    private final AtomicLong droppedEventCount = new AtomicLong(0L);
+
+    private final FileOutputStream output;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer
+            .allocateDirect(InputRecording.RECORD_SIZE * RECORDS_PER_WRITE)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    private final Writer writer = new Writer();
+
+    /**
+     * Time of the last written event, used to delta-encode the times. Only used by the writer.
+     */
+    private long previousEventTime = -1L;
+
+    private InputRecorder(FileOutputStream output) {
+        this.output = output;
+        this.channel = output.getChannel();
+    }
+
+    /**
+     * Create the file (or truncate it) and start recording.
+     */
+    @NonNull
+    static InputRecorder start(@NonNull File file) throws IOException {
+        InputRecorder recorder = new InputRecorder(new FileOutputStream(file));
+
+        try {
+            InputRecording.writeHeader(recorder.buffer);
+            recorder.flush();
+        } catch (IOException e) {
+            recorder.output.close();
+            throw e;
+        }
+
+        recorder.writer.start();
+        return recorder;
+    }
+
+    /**
+     * Record a button event. Must be called by a single thread at a time.
+     */
+    void onButtonEvent(int buttonCode, long firstDownTime, long eventTime, int flaggedAction,
+                       float pressure, int repeatCount) {
+        if (!ring.offerButton(0, buttonCode, firstDownTime, eventTime, flaggedAction, pressure,
+                repeatCount, 0L)) {
+            droppedEventCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Record a joystick event. Must be called by a single thread at a time.
+     */
+    void onJoystickEvent(int joystickCode, long eventTime, int flaggedAction, float x, float y) {
+        if (!ring.offerJoystick(0, joystickCode, eventTime, flaggedAction, x, y, 0L)) {
+            droppedEventCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Record the events of device 0 in a batch. Must be called by a single thread at a time.
+     */
+    void onEventBatch(EventBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.isKnown(i) && batch.getDeviceId(i) == 0 && !batch.offerTo(ring, i, 0L)) {
+                droppedEventCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return The number of events that couldn't be recorded because the writer didn't keep up.
+     */
+    long getDroppedEventCount() {
+        return droppedEventCount.get();
+    }
+
+    /**
+     * Write the pending events and close the file. Events received afterwards are ignored.
+     */
+    void stop() {
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Write the events waiting in the ring. Only called by the writer.
+     */
+    private void drain() throws IOException {
+        final long end = ring.getWriteIndex();
+        for (long i = ring.getReadIndex(); i < end; i++) {
+            if (buffer.remaining() < InputRecording.RECORD_SIZE) {
+                flush();
+            }
+
+            final long eventTime = ring.getEventTime(i);
+            final int timeDelta =
+                    previousEventTime < 0L ? 0 : (int) (eventTime - previousEventTime);
+            previousEventTime = eventTime;
+
+            InputRecording.writeRecord(buffer, timeDelta, ring.getKind(i), ring.getCode(i),
+                    ring.getFlaggedAction(i), ring.getValue0(i), ring.getValue1(i),
+                    ring.getRepeatCount(i), ring.getKind(i) == EventRing.KIND_BUTTON
+                            ? (int) (eventTime - ring.getFirstDownTime(i))
+                            : 0);
+            ring.release(i + 1);
+        }
+        flush();
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private class Writer extends Thread {
+        Writer() {
+            super("FlitchioRecorder");
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!isInterrupted()) {
+                    drain();
+                    LockSupport.parkNanos(WRITE_PERIOD_NANOS);
+                }
+                drain();
+            } catch (IOException e) {
+                FlitchioLog.e("Could not write the input recording: " + e.getMessage());
+            } finally {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    FlitchioLog.w("Could not close the input recording");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.supenta.flitchio.sdk;
+
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Binary log of the button and joystick events received by a controller, written by
+ * {@link InputRecorder} and read back, memory-mapped, by this class.
+ * <p>
+ * The events are stored as fixed-size records. The time of each event is stored as the delta
+ * with the previous one, which keeps the records small and makes the log independent of the
+ * time base of the device it was recorded on.
+ * <p>
+ * Layout of the file (little endian):
+ * <pre>
+ * HEADER (16 bytes)
+ *  0  int   magic ({@link #MAGIC})
+ *  4  int   format version ({@link #VERSION})
+ *  8  int   size of a record in bytes
+ * 12        reserved
+ * RECORD
+ *  0  int   milliseconds since the previous event (0 for the first one)
+ *  4  byte  kind ({@link EventRing#KIND_BUTTON} or {@link EventRing#KIND_JOYSTICK})
+ *  5  byte  code of the source
+ *  6  short flagged action
+ *  8  float pressure (button) or X (joystick)
+ * 12  float 0 (button) or Y (joystick)
+ * 16  int   repeat count (button) or 0 (joystick)
+ * 20  int   milliseconds since the first down time (button) or 0 (joystick)
+ * </pre>
+ * Fields appended to the record by future versions are skipped thanks to the record size.
+ */
+final class InputRecording {
+    static final int MAGIC = 0x464c5243; // "FLRC"
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 24;
+
+    private final ByteBuffer buffer;
+    private final int recordSize;
+
+    /*
+     * Fields of the current record.
+     */
+    private int timeDelta;
+    private int kind;
+    private int code;
+    private int flaggedAction;
+    private float value0;
+    private float value1;
+    private int repeatCount;
+    private int downDuration;
+
+    private InputRecording(ByteBuffer buffer, int recordSize) {
+        this.buffer = buffer;
+        this.recordSize = recordSize;
+    }
+
+    /**
+     * Write the header of a new log.
+     */
+    static void writeHeader(ByteBuffer out) {
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(RECORD_SIZE);
+        out.putInt(0);
+    }
+
+    /**
+     * Write a record. The buffer must be in little endian order.
+     */
+    static void writeRecord(ByteBuffer out, int timeDelta, int kind, int code, int flaggedAction,
+                            float value0, float value1, int repeatCount, int downDuration) {
+        out.putInt(timeDelta);
+        out.put((byte) kind);
+        out.put((byte) code);
+        out.putShort((short) flaggedAction);
+        out.putFloat(value0);
+        out.putFloat(value1);
+        out.putInt(repeatCount);
+        out.putInt(downDuration);
+    }
+
+    /**
+     * Map a log written by {@link InputRecorder}.
+     *
+     * @throws IOException If the file can't be read or isn't a log.
+     */
+    @NonNull
+    static InputRecording open(@NonNull File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                throw new IOException("Not an input recording: " + file);
+            }
+            if (buffer.getInt() > VERSION) {
+                // Later versions only append fields to the records
+                FlitchioLog.w("Recording made by a newer SDK: extra fields will be ignored");
+            }
+            final int recordSize = buffer.getInt();
+            if (recordSize < RECORD_SIZE) {
+                throw new IOException("Invalid record size: " + recordSize);
+            }
+            buffer.position(HEADER_SIZE);
+
+            return new InputRecording(buffer, recordSize);
+        } finally {
+            // The mapping stays valid after the file is closed
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Go back to the first record.
+     */
+    void rewind() {
+        buffer.position(HEADER_SIZE);
+    }
+
+    /**
+     * Read the next record, whose fields are then available through the getters.
+     *
+     * @return False if there are no more records.
+     */
+    boolean next() {
+        if (buffer.remaining() < recordSize) {
+            return false;
+        }
+
+        final int recordStart = buffer.position();
+        timeDelta = buffer.getInt();
+        kind = buffer.get();
+        code = buffer.get();
+        flaggedAction = buffer.getShort();
+        value0 = buffer.getFloat();
+        value1 = buffer.getFloat();
+        repeatCount = buffer.getInt();
+        downDuration = buffer.getInt();
+        buffer.position(recordStart + recordSize);
+
+        return true;
+    }
+
+    int getTimeDelta() {
+        return timeDelta;
+    }
+
+    int getKind() {
+        return kind;
+    }
+
+    int getCode() {
+        return code;
+    }
+
+    int getFlaggedAction() {
+        return flaggedAction;
+    }
+
+    float getValue0() {
+        return value0;
+    }
+
+    float getValue1() {
+        return value1;
+    }
+
+    int getRepeatCount() {
+        return repeatCount;
+    }
+
+    int getDownDuration() {
+        return downDuration;
+    }
+}
@@ -43,6 +43,6 @@ class InternalStatusReceiver extends SecureBroadcastReceiverWithCallback<Interna
         FlitchioLog.v("onReceive: " + intent);
 
         final int statusCode = intent.getIntExtra(EXTRA_STATUS, Status.UNKNOWN);
-        getCallback().onInternalStatusChanged(new Status(statusCode));
+        getCallback().onInternalStatusChanged(Status.of(statusCode));
     }
 }
@@ -22,7 +22,17 @@ public class JoystickEvent extends InputEvent<InputElement.Joystick> implements
     public static final Parcelable.Creator<JoystickEvent> CREATOR =
             new Parcelable.Creator<JoystickEvent>() {
                 public JoystickEvent createFromParcel(Parcel in) {
-                    return new JoystickEvent(in, InputElement.JOYSTICKS[in.readInt()]);
+                    // KEEP IT SYNCED WITH writeToParcel()
+                    InputElement.Joystick source = InputElement.JOYSTICKS[in.readInt()];
+                    long eventTime = in.readLong();
+                    int action = in.readInt();
+                    float x = in.readFloat();
+                    float y = in.readFloat();
+
+                    JoystickEvent event =
+                            obtain(source, eventTime, action & ~TRAILER_FLAGS, x, y);
+                    event.readTrailer(in, action);
+                    return event;
                 }
 
                 public JoystickEvent[] newArray(int size) {
@@ -30,8 +40,11 @@ public class JoystickEvent extends InputEvent<InputElement.Joystick> implements
                 }
             };
 
-    private final float x;
-    private final float y;
+    private static final int MAX_RECYCLED = 16;
+    private static final Pool<JoystickEvent> pool = new Pool<>(MAX_RECYCLED);
+
+    private float x;
+    private float y;
 
     /**
      * Not to be used by 3rd-party developers.
@@ -47,11 +60,58 @@ public class JoystickEvent extends InputEvent<InputElement.Joystick> implements
         this.y = y;
     }
 
-    private JoystickEvent(Parcel in, InputElement.Joystick source) {
-        super(in, source);
+    /**
+     * Obtain an event from the pool, or a new one if the pool is empty.
+     */
+    static JoystickEvent obtain(InputElement.Joystick source, long eventTime, int action,
+                                float x, float y) {
+        JoystickEvent event = pool.acquire();
+        if (event == null) {
+            return new JoystickEvent(source, eventTime, action, x, y);
+        }
+
+        event.set(source, eventTime, action, x, y);
+        return event;
+    }
+
+    /**
+     * Obtain a copy of the given event. Use it to keep an event passed to your
+     * {@link FlitchioEventListener} when event recycling is enabled.
+     * Call {@link #recycle()} on the copy when you don't need it anymore.
+     *
+     * @param other The event to copy.
+     * @return A copy of the given event, that you own.
+     * @see FlitchioController#setEventRecycling(boolean)
+     * @since 0.8.0
+     */
+    public static JoystickEvent obtain(JoystickEvent other) {
+        other.checkNotRecycled();
+        JoystickEvent copy =
+                obtain(other.source, other.eventTime, other.flaggedAction, other.x, other.y);
+        copy.deviceId = other.deviceId;
+        return copy;
+    }
 
-        x = in.readFloat();
-        y = in.readFloat();
+    /**
+     * {@inheritDoc}
+     *
+     * @since 0.8.0
+     */
+    @Override
+    public void recycle() {
+        if (markRecycled()) {
+            pool.release(this);
+        }
+    }
+
+    /**
+     * Overwrite the data of this event, so that the object can be reused.
+     */
+    void set(InputElement.Joystick source, long eventTime, int action, float x, float y) {
+        set(source, eventTime, action);
+
+        this.x = x;
+        this.y = y;
     }
 
     /**
@@ -61,6 +121,7 @@ public class JoystickEvent extends InputEvent<InputElement.Joystick> implements
      * @since 0.5.0
      */
     public float getX() {
+        checkNotRecycled();
         return x;
     }
 
@@ -71,6 +132,7 @@ public class JoystickEvent extends InputEvent<InputElement.Joystick> implements
      * @since 0.5.0
      */
     public float getY() {
+        checkNotRecycled();
         return y;
     }
 
@@ -82,12 +144,8 @@ public class JoystickEvent extends InputEvent<InputElement.Joystick> implements
      * @since 0.5.0
      */
     public float getAngle() {
-        float angle = (float) Math.toDegrees(Math.atan2(y, x));
-        if (angle < 0f) {
-            angle += 360f;
-        }
-
-        return angle;
+        checkNotRecycled();
+        return getAngle(x, y);
     }
 
     /**
@@ -98,6 +156,26 @@ public class JoystickEvent extends InputEvent<InputElement.Joystick> implements
      * @since 0.5.0
      */
     public float getDistance() {
+        checkNotRecycled();
+        return getDistance(x, y);
+    }
+
+    /**
+     * Shared with {@link FlitchioSnapshot#getJoystickAngle(int)}.
+     */
+    static float getAngle(float x, float y) {
+        float angle = (float) Math.toDegrees(Math.atan2(y, x));
+        if (angle < 0f) {
+            angle += 360f;
+        }
+
+        return angle;
+    }
+
+    /**
+     * Shared with {@link FlitchioSnapshot#getJoystickDistance(int)}.
+     */
+    static float getDistance(float x, float y) {
         return (float) Math.sqrt(x * x + y * y);
     }
 
@@ -118,6 +196,7 @@ public class JoystickEvent extends InputEvent<InputElement.Joystick> implements
 
         dest.writeFloat(x);
         dest.writeFloat(y);
+        writeTrailer(dest);
     }
 
 
@@ -0,0 +1,74 @@
+package com.supenta.flitchio.sdk;
+
+/**
+ * Keeps the positions of each joystick received between two polls, from the events received by
+ * the controller, so that they can be replayed by a polling client. It holds a bounded number of
+ * samples per joystick: when a poll is late, the oldest samples are dropped.
+ * <p>
+ * It is fed on the binder thread and drained on the polling thread. Both are short copies into
+ * preallocated arrays, done under the lock of this object.
+ */
+final class JoystickHistoryTracker {
+    private final float[] x =
+            new float[InputElement.JOYSTICKS.length * FlitchioSnapshot.HISTORY_CAPACITY];
+    private final float[] y = new float[x.length];
+    private final long[] eventTime = new long[x.length];
+
+    /**
+     * Position of the oldest sample in the ring of each joystick.
+     */
+    private final int[] start = new int[InputElement.JOYSTICKS.length];
+    private final int[] size = new int[InputElement.JOYSTICKS.length];
+
+    /**
+     * Take into account a joystick event received from the Manager.
+     */
+    synchronized void onJoystickEvent(int joystickCode, long eventTime, float x, float y) {
+        final int capacity = FlitchioSnapshot.HISTORY_CAPACITY;
+
+        final int position;
+        if (size[joystickCode] < capacity) {
+            position = (start[joystickCode] + size[joystickCode]) % capacity;
+            size[joystickCode]++;
+        } else {
+            // Full: overwrite the oldest sample
+            position = start[joystickCode];
+            start[joystickCode] = (start[joystickCode] + 1) % capacity;
+        }
+
+        final int index = joystickCode * capacity + position;
+        this.x[index] = x;
+        this.y[index] = y;
+        this.eventTime[index] = eventTime;
+    }
+
+    /**
+     * Copy the samples received since the previous call into the given snapshot, oldest first,
+     * and forget them.
+     */
+    synchronized void drainInto(FlitchioSnapshot snapshot) {
+        final int capacity = FlitchioSnapshot.HISTORY_CAPACITY;
+
+        for (int code = 0; code < InputElement.JOYSTICKS.length; code++) {
+            snapshot.setJoystickHistorySize(code, size[code]);
+
+            for (int pos = 0; pos < size[code]; pos++) {
+                final int index = code * capacity + (start[code] + pos) % capacity;
+                snapshot.setJoystickHistory(code, pos, eventTime[index], x[index], y[index]);
+            }
+
+            start[code] = 0;
+            size[code] = 0;
+        }
+    }
+
+    /**
+     * Forget the samples received so far.
+     */
+    synchronized void reset() {
+        for (int code = 0; code < InputElement.JOYSTICKS.length; code++) {
+            start[code] = 0;
+            size[code] = 0;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.supenta.flitchio.sdk;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations with logarithmic buckets, in microseconds: bucket 0 counts the
+ * durations under 1 us and bucket N (N > 0) the durations in [2^(N-1) ; 2^N[ us. The last bucket
+ * also counts all the longer durations.
+ * <p>
+ * Recording is allocation-free and lock-free, so that it can be done on the event path.
+ */
+final class LatencyHistogram {
+    static final int BUCKETS = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong sumNanos = new AtomicLong(0L);
+    private final AtomicLong maxNanos = new AtomicLong(0L);
+
+    void record(long durationNanos) {
+        if (durationNanos < 0L) {
+            // The clocks are not monotonic relatively to each other at the millisecond level
+            durationNanos = 0L;
+        }
+
+        buckets.incrementAndGet(bucketOf(durationNanos / 1000L));
+        sumNanos.addAndGet(durationNanos);
+
+        long max = maxNanos.get();
+        while (durationNanos > max && !maxNanos.compareAndSet(max, durationNanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    private static int bucketOf(long durationMicros) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(durationMicros));
+    }
+
+    /**
+     * Copy the content of this histogram into the given arrays, at the given position.
+     *
+     * @return The total number of recorded durations.
+     */
+    long copyTo(long[] bucketCounts, int offset) {
+        long count = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            bucketCounts[offset + i] = buckets.get(i);
+            count += bucketCounts[offset + i];
+        }
+        return count;
+    }
+
+    long getSumNanos() {
+        return sumNanos.get();
+    }
+
+    long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0L);
+        }
+        sumNanos.set(0L);
+        maxNanos.set(0L);
+    }
+}
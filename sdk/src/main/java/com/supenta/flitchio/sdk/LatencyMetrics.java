@@ -0,0 +1,154 @@
+package com.supenta.flitchio.sdk;
+
+/**
+ * Latency of the events delivered to your {@link FlitchioEventListener}, measured on the device
+ * for each stage of the path of an event:
+ * <ul>
+ * <li>{@link #STAGE_BINDER}: from the time of the event, as set by Flitchio Manager, to the
+ * reception of the event by this app;</li>
+ * <li>{@link #STAGE_QUEUE}: from the reception of the event to the moment it is taken from the
+ * queue to be dispatched, that is the time spent waiting for the thread of the listener;</li>
+ * <li>{@link #STAGE_LISTENER}: the time spent in your listener callback.</li>
+ * </ul>
+ * Each stage is described by a histogram with logarithmic buckets: bucket 0 counts the durations
+ * under 1 microsecond and bucket N (N > 0) the durations up to
+ * {@link #getBucketUpperBoundMicros(int)}.
+ * <p/>
+ * Latencies are only measured if you enable
+ * {@link FlitchioController#setLatencyMetricsEnabled(boolean)}, and they are retrieved with
+ * {@link FlitchioController#obtainLatencyMetrics(LatencyMetrics)}.
+ * <p/>
+ * Note that the time of an event has a resolution of one millisecond, so the durations of
+ * {@link #STAGE_BINDER} are only accurate to the millisecond.
+ *
+ * @since 0.8.0
+ */
+public final class LatencyMetrics {
+    /**
+     * From the time of the event to its reception by this app.
+     *
+     * @since 0.8.0
+     */
+    public static final int STAGE_BINDER = 0;
+
+    /**
+     * From the reception of the event to the moment it is dispatched.
+     *
+     * @since 0.8.0
+     */
+    public static final int STAGE_QUEUE = 1;
+
+    /**
+     * Execution of the listener callback.
+     *
+     * @since 0.8.0
+     */
+    public static final int STAGE_LISTENER = 2;
+
+    /**
+     * Number of buckets of each histogram.
+     *
+     * @since 0.8.0
+     */
+    public static final int BUCKET_COUNT = LatencyHistogram.BUCKETS;
+
+    static final int STAGE_COUNT = 3;
+
+    private final long[] bucketCounts = new long[STAGE_COUNT * BUCKET_COUNT];
+    private final long[] counts = new long[STAGE_COUNT];
+    private final long[] sumNanos = new long[STAGE_COUNT];
+    private final long[] maxNanos = new long[STAGE_COUNT];
+
+    /**
+     * Create empty metrics, to be filled by
+     * {@link FlitchioController#obtainLatencyMetrics(LatencyMetrics)}.
+     *
+     * @since 0.8.0
+     */
+    public LatencyMetrics() {
+    }
+
+    void set(int stage, LatencyHistogram histogram) {
+        counts[stage] = histogram.copyTo(bucketCounts, stage * BUCKET_COUNT);
+        sumNanos[stage] = histogram.getSumNanos();
+        maxNanos[stage] = histogram.getMaxNanos();
+    }
+
+    /**
+     * Retrieve the number of durations measured for the given stage.
+     *
+     * @param stage One of {@link #STAGE_BINDER}, {@link #STAGE_QUEUE} or {@link #STAGE_LISTENER}.
+     * @since 0.8.0
+     */
+    public long getCount(int stage) {
+        return counts[stage];
+    }
+
+    /**
+     * Retrieve the number of durations of the given stage that fell in the given bucket.
+     *
+     * @param stage  One of {@link #STAGE_BINDER}, {@link #STAGE_QUEUE} or {@link #STAGE_LISTENER}.
+     * @param bucket From 0 to {@link #BUCKET_COUNT} - 1.
+     * @since 0.8.0
+     */
+    public long getBucketCount(int stage, int bucket) {
+        return bucketCounts[stage * BUCKET_COUNT + bucket];
+    }
+
+    /**
+     * Retrieve the upper bound (excluded) of the durations counted in the given bucket. The last
+     * bucket has no upper bound.
+     *
+     * @param bucket From 0 to {@link #BUCKET_COUNT} - 1.
+     * @return The upper bound in microseconds, or {@link Long#MAX_VALUE} for the last bucket.
+     * @since 0.8.0
+     */
+    public static long getBucketUpperBoundMicros(int bucket) {
+        return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    /**
+     * Retrieve the average duration of the given stage.
+     *
+     * @param stage One of {@link #STAGE_BINDER}, {@link #STAGE_QUEUE} or {@link #STAGE_LISTENER}.
+     * @return The average in microseconds, or 0 if nothing has been measured.
+     * @since 0.8.0
+     */
+    public long getMeanMicros(int stage) {
+        return counts[stage] == 0L ? 0L : sumNanos[stage] / counts[stage] / 1000L;
+    }
+
+    /**
+     * Retrieve the longest duration of the given stage.
+     *
+     * @param stage One of {@link #STAGE_BINDER}, {@link #STAGE_QUEUE} or {@link #STAGE_LISTENER}.
+     * @return The maximum in microseconds.
+     * @since 0.8.0
+     */
+    public long getMaxMicros(int stage) {
+        return maxNanos[stage] / 1000L;
+    }
+
+    /**
+     * Estimate a percentile of the durations of the given stage, as the upper bound of the bucket
+     * in which it falls.
+     *
+     * @param stage      One of {@link #STAGE_BINDER}, {@link #STAGE_QUEUE} or
+     *                   {@link #STAGE_LISTENER}.
+     * @param percentile From 0.0 to 100.0, for instance 99.0.
+     * @return The estimated percentile in microseconds, or 0 if nothing has been measured.
+     * @since 0.8.0
+     */
+    public long getPercentileMicros(int stage, double percentile) {
+        final long rank = (long) Math.ceil(counts[stage] * percentile / 100.0);
+
+        long seen = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += getBucketCount(stage, i);
+            if (seen >= rank && seen > 0L) {
+                return Math.min(getBucketUpperBoundMicros(i), getMaxMicros(stage));
+            }
+        }
+        return 0L;
+    }
+}
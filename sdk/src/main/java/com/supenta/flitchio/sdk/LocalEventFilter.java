@@ -0,0 +1,111 @@
+package com.supenta.flitchio.sdk;
+
+/**
+ * Applies an {@link EventFilter} on the client side, for the Managers that don't agree on
+ * {@link Capabilities#SUBSCRIPTION_FILTER}. The events are then still sent over IPC, but they are
+ * dropped as soon as they are received, so that the rest of the event path behaves the same as
+ * with a Manager that filters them.
+ * <p>
+ * It also drops the D-pad button events sent by the Manager when they are derived on the client
+ * side by a {@link DpadDeriver}, and the Manager didn't agree to stop sending them.
+ * <p>
+ * The delta and the interval of a joystick move are measured from the last move delivered for
+ * that joystick, not from the last one received, so that a slow drift still gets through once it
+ * adds up. A new filter is created every time the client registers, which forgets these moves.
+ */
+final class LocalEventFilter {
+    private final int buttonMask;
+    private final int joystickMask;
+    private final float minJoystickDeltaSquared;
+    private final long minJoystickIntervalMillis;
+    private final boolean dropReceivedDpadButtons;
+
+    /*
+     * Last event delivered for joystick N of device I, at index I * JOYSTICKS.length + N.
+     */
+    private final float[] lastX =
+            new float[MultiDeviceSnapshot.MAX_DEVICES * InputElement.JOYSTICKS.length];
+    private final float[] lastY = new float[lastX.length];
+    private final long[] lastEventTime = new long[lastX.length];
+
+    /**
+     * @param filter                  The filter to apply, or null to accept all the events.
+     * @param dropReceivedDpadButtons True to drop the D-pad button events sent by the Manager.
+     */
+    LocalEventFilter(EventFilter filter, boolean dropReceivedDpadButtons) {
+        if (filter != null) {
+            buttonMask = filter.getButtonMask();
+            joystickMask = filter.getJoystickMask();
+            minJoystickDeltaSquared = filter.getMinJoystickDelta() * filter.getMinJoystickDelta();
+            minJoystickIntervalMillis =
+                    filter.getMaxJoystickRate() > 0 ? 1000L / filter.getMaxJoystickRate() : 0L;
+        } else {
+            buttonMask = ~0;
+            joystickMask = ~0;
+            minJoystickDeltaSquared = 0.0f;
+            minJoystickIntervalMillis = 0L;
+        }
+        this.dropReceivedDpadButtons = dropReceivedDpadButtons;
+
+        for (int i = 0; i < lastEventTime.length; i++) {
+            lastEventTime[i] = Long.MIN_VALUE / 2;
+        }
+    }
+
+    /**
+     * Check a button event, either received from the Manager or derived on the client side.
+     */
+    boolean acceptButton(int buttonCode) {
+        return (buttonMask & (1 << buttonCode)) != 0;
+    }
+
+    /**
+     * Check a button event received from the Manager.
+     */
+    boolean acceptReceivedButton(int buttonCode) {
+        return acceptButton(buttonCode)
+                && !(dropReceivedDpadButtons && DpadDeriver.isDpadButton(buttonCode));
+    }
+
+    boolean acceptJoystick(int deviceId, int joystickCode, long eventTime, int flaggedAction,
+                           float x, float y) {
+        if ((joystickMask & (1 << joystickCode)) == 0) {
+            return false;
+        }
+
+        final int index = deviceId * InputElement.JOYSTICKS.length + joystickCode;
+        if ((flaggedAction & ~InputEvent.FLAG_DISPATCH) == InputEvent.ACTION_MOVE) {
+            final float dx = x - lastX[index];
+            final float dy = y - lastY[index];
+            // A move back to the centre always passes: no later move would bring the released
+            // joystick up to date
+            final boolean centred = x == 0.0f && y == 0.0f;
+            if (!centred && (dx * dx + dy * dy < minJoystickDeltaSquared
+                    || eventTime - lastEventTime[index] < minJoystickIntervalMillis)) {
+                return false;
+            }
+        }
+
+        lastX[index] = x;
+        lastY[index] = y;
+        lastEventTime[index] = eventTime;
+        return true;
+    }
+
+    /**
+     * Check an event of a batch received from the Manager.
+     */
+    boolean accept(EventBatch batch, int index) {
+        if (!batch.isKnown(index)) {
+            return false;
+        }
+
+        if (batch.getKind(index) == EventBatch.KIND_BUTTON) {
+            return acceptReceivedButton(batch.getCode(index));
+        } else {
+            return acceptJoystick(batch.getDeviceId(index), batch.getCode(index),
+                    batch.getEventTime(index), batch.getFlaggedAction(index), batch.getX(index),
+                    batch.getY(index));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.supenta.flitchio.sdk;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Memory fences ordering the plain accesses to a region of memory shared with another process,
+ * where the volatile fields of the Java memory model don't help: a volatile read only prevents
+ * the accesses that follow it from being done earlier, and a volatile write the accesses that
+ * precede it from being done later.
+ * <p>
+ * The fences of {@code sun.misc.Unsafe} are looked up by reflection, since it is not part of the
+ * public API. They are available from Android 7.0, where {@code StampedLock} relies on them.
+ * On older versions, {@link #isAvailable()} returns false and the callers must not rely on the
+ * ordering of their accesses.
+ */
+final class MemoryFences {
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    private static final Object unsafe;
+    private static final Method loadFence;
+    private static final Method storeFence;
+
+    static {
+        Object foundUnsafe;
+        Method foundLoadFence;
+        Method foundStoreFence;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            foundUnsafe = getInstance(unsafeClass);
+            foundLoadFence = unsafeClass.getMethod("loadFence");
+            foundStoreFence = unsafeClass.getMethod("storeFence");
+        } catch (Exception e) { // Not found, or not accessible
+            foundUnsafe = null;
+            foundLoadFence = null;
+            foundStoreFence = null;
+        }
+
+        unsafe = foundUnsafe;
+        loadFence = foundLoadFence;
+        storeFence = foundStoreFence;
+    }
+
+    private MemoryFences() {
+    }
+
+    private static Object getInstance(Class<?> unsafeClass) throws Exception {
+        Field field;
+        try {
+            field = unsafeClass.getDeclaredField("theUnsafe");
+        } catch (NoSuchFieldException e) {
+            field = unsafeClass.getDeclaredField("THE_ONE"); // Name used by Android
+        }
+        field.setAccessible(true);
+        return field.get(null);
+    }
+
+    /**
+     * @return True if the fences are available on this device.
+     */
+    static boolean isAvailable() {
+        return unsafe != null;
+    }
+
+    /**
+     * Prevent the loads before this call from being reordered with the loads and stores after it.
+     *
+     * @throws UnsupportedOperationException If the fences are not available on this device.
+     */
+    static void loadFence() {
+        invoke(loadFence);
+    }
+
+    /**
+     * Prevent the stores before this call from being reordered with the loads and stores after
+     * it.
+     *
+     * @throws UnsupportedOperationException If the fences are not available on this device.
+     */
+    static void storeFence() {
+        invoke(storeFence);
+    }
+
+    private static void invoke(Method fence) {
+        if (unsafe == null) {
+            throw new UnsupportedOperationException("Memory fences are not available");
+        }
+
+        try {
+            fence.invoke(unsafe, NO_ARGUMENTS);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            // Both methods are public and throw nothing
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.supenta.flitchio.sdk;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.support.annotation.NonNull;
+
+/**
+ * Object describing the state of all the Flitchios connected at a given moment, for local
+ * multiplayer games and setups with several devices. It is retrieved with
+ * {@link FlitchioController#obtainMultiDeviceSnapshot(MultiDeviceSnapshot)}, in a single call
+ * whatever the number of devices.
+ * <p/>
+ * Each device is identified by an ID ranging from 0 to {@link #MAX_DEVICES} - 1, which stays the
+ * same as long as the device is connected. It is the ID returned by
+ * {@link InputEvent#getDeviceId()} for the events of that device. Device 0 is the one described by
+ * {@link FlitchioController#obtainSnapshot(FlitchioSnapshot)}.
+ * <p/>
+ * The getters below are the ones of {@link FlitchioSnapshot}, with the ID of the device as
+ * first argument. The states of all the devices are stored in the same flat arrays, so that
+ * polling every device is a simple loop:
+ * <pre>
+ * controller.obtainMultiDeviceSnapshot(snapshot);
+ * for (int device = 0; device &lt; snapshot.getDeviceCount(); device++) {
+ *     if (snapshot.isDeviceConnected(device)) {
+ *         movePlayer(device, snapshot.getJoystickX(device, InputElement.JOYSTICK_TOP),
+ *                 snapshot.getJoystickY(device, InputElement.JOYSTICK_TOP));
+ *     }
+ * }
+ * </pre>
+ * For the rest of the API of {@link FlitchioSnapshot}, copy the state of a device with
+ * {@link #getDeviceSnapshot(int, FlitchioSnapshot)}.
+ *
+ * @since 0.8.0
+ */
+public final class MultiDeviceSnapshot implements Parcelable {
+    /**
+     * Maximum number of devices described by a snapshot. The devices beyond are ignored.
+     *
+     * @since 0.8.0
+     */
+    public static final int MAX_DEVICES = 4;
+
+    /**
+     * @hide
+     */
+    public static final Parcelable.Creator<MultiDeviceSnapshot> CREATOR =
+            new Parcelable.Creator<MultiDeviceSnapshot>() {
+                public MultiDeviceSnapshot createFromParcel(Parcel in) {
+                    MultiDeviceSnapshot snapshot = new MultiDeviceSnapshot();
+                    snapshot.readFromParcel(in);
+                    return snapshot;
+                }
+
+                public MultiDeviceSnapshot[] newArray(int size) {
+                    return new MultiDeviceSnapshot[size];
+                }
+            };
+
+    private static final int BUTTONS = InputElement.BUTTONS.length;
+    private static final int JOYSTICKS = InputElement.JOYSTICKS.length;
+
+    /*
+     * Button B of device D is stored at index D * BUTTONS + B, and joystick J of device D at
+     * index D * JOYSTICKS + J.
+     */
+    private final boolean[] deviceConnected = new boolean[MAX_DEVICES];
+
+    private final float[] buttonPressure = new float[MAX_DEVICES * BUTTONS];
+    private final int[] buttonState = new int[MAX_DEVICES * BUTTONS];
+    private final int[] buttonRepeatCount = new int[MAX_DEVICES * BUTTONS];
+    private final long[] buttonEventTime = new long[MAX_DEVICES * BUTTONS];
+    private final long[] buttonFirstDownTime = new long[MAX_DEVICES * BUTTONS];
+
+    private final float[] joystickX = new float[MAX_DEVICES * JOYSTICKS];
+    private final float[] joystickY = new float[MAX_DEVICES * JOYSTICKS];
+    private final int[] joystickAction = new int[MAX_DEVICES * JOYSTICKS];
+    private final long[] joystickEventTime = new long[MAX_DEVICES * JOYSTICKS];
+
+    /**
+     * Number of devices described, connected or not.
+     */
+    private int deviceCount = 0;
+
+    /**
+     * Create an empty snapshot, typically to be filled later by
+     * {@link FlitchioController#obtainMultiDeviceSnapshot(MultiDeviceSnapshot)}.
+     *
+     * @since 0.8.0
+     */
+    public MultiDeviceSnapshot() {
+        clear();
+    }
+
+    /**
+     * Format of the parcel. The records are the ones of the flat format of
+     * {@link FlitchioSnapshot}.
+     * <pre>
+     * HEADER
+     *   int  number of devices
+     *   int  size of a button record in bytes
+     *   int  size of a joystick record in bytes
+     *   int  number of button records per device
+     *   int  number of joystick records per device
+     * DEVICE
+     *   int  1 if the device is connected, 0 otherwise
+     *   BUTTON RECORD for each button
+     *   JOYSTICK RECORD for each joystick
+     * </pre>
+     * KEEP IT SYNCED WITH THE VALUE IN FLITCHIO MANAGER.
+     */
+    private void readFromParcel(Parcel in) {
+        final int devices = in.readInt();
+        final int buttonRecordSize = in.readInt();
+        final int joystickRecordSize = in.readInt();
+        final int buttonRecords = in.readInt();
+        final int joystickRecords = in.readInt();
+
+        clear();
+        deviceCount = Math.min(devices, MAX_DEVICES);
+
+        final int deviceSize =
+                4 + buttonRecords * buttonRecordSize + joystickRecords * joystickRecordSize;
+        final int devicesStart = in.dataPosition();
+        for (int d = 0; d < deviceCount; d++) {
+            final int deviceStart = devicesStart + d * deviceSize;
+            in.setDataPosition(deviceStart);
+            deviceConnected[d] = in.readInt() != 0;
+
+            // The records of the elements unknown to this version are skipped altogether
+            final int buttonsStart = deviceStart + 4;
+            for (int i = 0; i < Math.min(buttonRecords, BUTTONS); i++) {
+                in.setDataPosition(buttonsStart + i * buttonRecordSize);
+                if (in.readInt() == 0) {
+                    continue; // No event for this button
+                }
+
+                final int index = d * BUTTONS + i;
+                buttonEventTime[index] = in.readLong();
+                buttonState[index] = in.readInt() & ~InputEvent.FLAG_DISPATCH;
+                buttonPressure[index] = in.readFloat();
+                buttonRepeatCount[index] = in.readInt();
+                buttonFirstDownTime[index] = in.readLong();
+            }
+
+            final int joysticksStart = buttonsStart + buttonRecords * buttonRecordSize;
+            for (int i = 0; i < Math.min(joystickRecords, JOYSTICKS); i++) {
+                in.setDataPosition(joysticksStart + i * joystickRecordSize);
+                if (in.readInt() == 0) {
+                    continue; // No event for this joystick
+                }
+
+                final int index = d * JOYSTICKS + i;
+                joystickEventTime[index] = in.readLong();
+                joystickAction[index] = in.readInt() & ~InputEvent.FLAG_DISPATCH;
+                joystickX[index] = in.readFloat();
+                joystickY[index] = in.readFloat();
+            }
+        }
+
+        in.setDataPosition(devicesStart + devices * deviceSize);
+    }
+
+    /**
+     * @hide
+     */
+    @Override
+    public void writeToParcel(Parcel out, int flags) {
+        out.writeInt(deviceCount);
+        out.writeInt(FlitchioSnapshot.FLAT_BUTTON_RECORD_SIZE);
+        out.writeInt(FlitchioSnapshot.FLAT_JOYSTICK_RECORD_SIZE);
+        out.writeInt(BUTTONS);
+        out.writeInt(JOYSTICKS);
+
+        for (int d = 0; d < deviceCount; d++) {
+            out.writeInt(deviceConnected[d] ? 1 : 0);
+
+            for (int index = d * BUTTONS; index < (d + 1) * BUTTONS; index++) {
+                out.writeInt(buttonEventTime[index] != 0L ? 1 : 0);
+                out.writeLong(buttonEventTime[index]);
+                out.writeInt(buttonState[index]);
+                out.writeFloat(buttonPressure[index]);
+                out.writeInt(buttonRepeatCount[index]);
+                out.writeLong(buttonFirstDownTime[index]);
+            }
+
+            for (int index = d * JOYSTICKS; index < (d + 1) * JOYSTICKS; index++) {
+                out.writeInt(joystickEventTime[index] != 0L ? 1 : 0);
+                out.writeLong(joystickEventTime[index]);
+                out.writeInt(joystickAction[index]);
+                out.writeFloat(joystickX[index]);
+                out.writeFloat(joystickY[index]);
+            }
+        }
+    }
+
+    /**
+     * @hide
+     */
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    /**
+     * Reset this snapshot to the state where no device is described.
+     */
+    void clear() {
+        deviceCount = 0;
+        for (int d = 0; d < MAX_DEVICES; d++) {
+            deviceConnected[d] = false;
+        }
+        for (int index = 0; index < buttonState.length; index++) {
+            buttonPressure[index] = 0.0f;
+            buttonState[index] = FlitchioSnapshot.STATE_RELEASED;
+            buttonRepeatCount[index] = 0;
+            buttonEventTime[index] = 0L;
+            buttonFirstDownTime[index] = 0L;
+        }
+        for (int index = 0; index < joystickX.length; index++) {
+            joystickX[index] = 0.0f;
+            joystickY[index] = 0.0f;
+            joystickAction[index] = InputEvent.ACTION_NONE;
+            joystickEventTime[index] = 0L;
+        }
+    }
+
+    /**
+     * Copy the content of the given snapshot into this one.
+     */
+    void set(MultiDeviceSnapshot other) {
+        deviceCount = other.deviceCount;
+        System.arraycopy(other.deviceConnected, 0, deviceConnected, 0, MAX_DEVICES);
+        System.arraycopy(other.buttonPressure, 0, buttonPressure, 0, buttonPressure.length);
+        System.arraycopy(other.buttonState, 0, buttonState, 0, buttonState.length);
+        System.arraycopy(other.buttonRepeatCount, 0, buttonRepeatCount, 0,
+                buttonRepeatCount.length);
+        System.arraycopy(other.buttonEventTime, 0, buttonEventTime, 0, buttonEventTime.length);
+        System.arraycopy(other.buttonFirstDownTime, 0, buttonFirstDownTime, 0,
+                buttonFirstDownTime.length);
+        System.arraycopy(other.joystickX, 0, joystickX, 0, joystickX.length);
+        System.arraycopy(other.joystickY, 0, joystickY, 0, joystickY.length);
+        System.arraycopy(other.joystickAction, 0, joystickAction, 0, joystickAction.length);
+        System.arraycopy(other.joystickEventTime, 0, joystickEventTime, 0,
+                joystickEventTime.length);
+    }
+
+    /**
+     * Describe a single device with the given state, for the Managers that handle only one.
+     */
+    void setSingleDevice(boolean connected, FlitchioSnapshot state) {
+        clear();
+        deviceCount = 1;
+        deviceConnected[0] = connected;
+
+        for (int i = 0; i < BUTTONS; i++) {
+            buttonPressure[i] = state.getButtonPressure(i);
+            buttonState[i] = state.getButtonState(i);
+            buttonRepeatCount[i] = state.getButtonRepeatCount(i);
+            buttonEventTime[i] = state.getButtonEventTime(i);
+            buttonFirstDownTime[i] = state.getButtonFirstDownTime(i);
+        }
+        for (int i = 0; i < JOYSTICKS; i++) {
+            joystickX[i] = state.getJoystickX(i);
+            joystickY[i] = state.getJoystickY(i);
+            joystickAction[i] = state.getJoystickAction(i);
+            joystickEventTime[i] = state.getJoystickEventTime(i);
+        }
+    }
+
+    /**
+     * Retrieve the number of devices described by this snapshot. Some of them may be
+     * disconnected: check with {@link #isDeviceConnected(int)}.
+     *
+     * @return A number ranging from 0 to {@link #MAX_DEVICES}.
+     * @since 0.8.0
+     */
+    public int getDeviceCount() {
+        return deviceCount;
+    }
+
+    /**
+     * Check whether the given device is connected. A disconnected device is described as
+     * released and centred.
+     *
+     * @since 0.8.0
+     */
+    public boolean isDeviceConnected(int deviceId) {
+        return deviceId < deviceCount && deviceConnected[deviceId];
+    }
+
+    /**
+     * Copy the state of the given device into a {@link FlitchioSnapshot}, to use the whole API of
+     * the latter. The counters and histories of the snapshot are left empty.
+     *
+     * @param reuse The snapshot to fill. Its previous content is overwritten.
+     * @return The snapshot that was passed.
+     * @since 0.8.0
+     */
+    @NonNull
+    public FlitchioSnapshot getDeviceSnapshot(int deviceId, @NonNull FlitchioSnapshot reuse) {
+        reuse.clear();
+        for (int i = 0; i < BUTTONS; i++) {
+            final int index = deviceId * BUTTONS + i;
+            reuse.setButton(i, buttonFirstDownTime[index], buttonEventTime[index],
+                    buttonState[index], buttonPressure[index], buttonRepeatCount[index]);
+        }
+        for (int i = 0; i < JOYSTICKS; i++) {
+            final int index = deviceId * JOYSTICKS + i;
+            reuse.setJoystick(i, joystickEventTime[index], joystickAction[index],
+                    joystickX[index], joystickY[index]);
+        }
+        return reuse;
+    }
+
+    /**
+     * Retrieve the pressure of the given button of the given device.
+     *
+     * @return A value ranging from 0.0 (if not pressed) to 1.0 (maximum pressure).
+     * @see FlitchioSnapshot#getButtonPressure(int)
+     * @since 0.8.0
+     */
+    public float getButtonPressure(int deviceId, int buttonCode) {
+        return buttonPressure[deviceId * BUTTONS + buttonCode];
+    }
+
+    /**
+     * Retrieve the pressure of the given button of the given device.
+     *
+     * @return A value ranging from 0.0 (if not pressed) to 1.0 (maximum pressure).
+     * @see FlitchioSnapshot#getButtonPressure(InputElement.Button)
+     * @since 0.8.0
+     */
+    public float getButtonPressure(int deviceId, InputElement.Button button) {
+        return getButtonPressure(deviceId, button.code);
+    }
+
+    /**
+     * Retrieve the state of the given button of the given device.
+     *
+     * @return One of {@link FlitchioSnapshot#STATE_PRESSING},
+     * {@link FlitchioSnapshot#STATE_PRESSED}, {@link FlitchioSnapshot#STATE_RELEASING} or
+     * {@link FlitchioSnapshot#STATE_RELEASED}.
+     * @see FlitchioSnapshot#getButtonState(int)
+     * @since 0.8.0
+     */
+    public int getButtonState(int deviceId, int buttonCode) {
+        return buttonState[deviceId * BUTTONS + buttonCode];
+    }
+
+    /**
+     * Retrieve the state of the given button of the given device.
+     *
+     * @return One of {@link FlitchioSnapshot#STATE_PRESSING},
+     * {@link FlitchioSnapshot#STATE_PRESSED}, {@link FlitchioSnapshot#STATE_RELEASING} or
+     * {@link FlitchioSnapshot#STATE_RELEASED}.
+     * @see FlitchioSnapshot#getButtonState(InputElement.Button)
+     * @since 0.8.0
+     */
+    public int getButtonState(int deviceId, InputElement.Button button) {
+        return getButtonState(deviceId, button.code);
+    }
+
+    /**
+     * Retrieve the X coordinate of the given joystick of the given device.
+     *
+     * @return A value ranging from -1.0 to 1.0.
+     * @see FlitchioSnapshot#getJoystickX(int)
+     * @since 0.8.0
+     */
+    public float getJoystickX(int deviceId, int joystickCode) {
+        return joystickX[deviceId * JOYSTICKS + joystickCode];
+    }
+
+    /**
+     * Retrieve the X coordinate of the given joystick of the given device.
+     *
+     * @return A value ranging from -1.0 to 1.0.
+     * @see FlitchioSnapshot#getJoystickX(InputElement.Joystick)
+     * @since 0.8.0
+     */
+    public float getJoystickX(int deviceId, InputElement.Joystick joystick) {
+        return getJoystickX(deviceId, joystick.code);
+    }
+
+    /**
+     * Retrieve the Y coordinate of the given joystick of the given device.
+     *
+     * @return A value ranging from -1.0 to 1.0.
+     * @see FlitchioSnapshot#getJoystickY(int)
+     * @since 0.8.0
+     */
+    public float getJoystickY(int deviceId, int joystickCode) {
+        return joystickY[deviceId * JOYSTICKS + joystickCode];
+    }
+
+    /**
+     * Retrieve the Y coordinate of the given joystick of the given device.
+     *
+     * @return A value ranging from -1.0 to 1.0.
+     * @see FlitchioSnapshot#getJoystickY(InputElement.Joystick)
+     * @since 0.8.0
+     */
+    public float getJoystickY(int deviceId, InputElement.Joystick joystick) {
+        return getJoystickY(deviceId, joystick.code);
+    }
+}
@@ -0,0 +1,53 @@
+package com.supenta.flitchio.sdk;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Bounded pool of reusable objects, in the spirit of the recycler of
+ * {@link android.view.MotionEvent}. It is used on the event path to avoid allocating objects for
+ * every event received from Flitchio Manager. This class is thread-safe.
+ *
+ * @param <T> The type of the pooled objects.
+ */
+final class Pool<T> {
+    private final Object[] instances;
+    private int size = 0;
+
+    Pool(int maxSize) {
+        instances = new Object[maxSize];
+    }
+
+    /**
+     * Take an object from the pool.
+     *
+     * @return A pooled object, or null if the pool is empty: the caller should allocate a new one.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    synchronized T acquire() {
+        if (size == 0) {
+            return null;
+        }
+
+        size--;
+        T instance = (T) instances[size];
+        instances[size] = null;
+        return instance;
+    }
+
+    /**
+     * Give an object back to the pool. The caller must not use it anymore.
+     *
+     * @return True if the object has been pooled, false if the pool was full.
+     */
+    synchronized boolean release(@NonNull T instance) {
+        if (size == instances.length) {
+            return false;
+        }
+
+        instances[size] = instance;
+        size++;
+        return true;
+    }
+}
@@ -0,0 +1,328 @@
+package com.supenta.flitchio.sdk;
+
+import android.os.ParcelFileDescriptor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Not to be used by 3rd-party developers.
+ * <p>
+ * Shared memory region in which Flitchio Manager publishes the latest state of Flitchio, so that
+ * a client can poll it without doing a binder transaction for every
+ * {@link FlitchioController#obtainSnapshot()}.
+ * The Manager creates the region as a regular file of its private storage, mapped on both sides,
+ * and hands it over once as a read-only {@link ParcelFileDescriptor} through
+ * {@link IFlitchioService#getSnapshotMemory(int)}. An ashmem region can't be used instead, since
+ * its size is not visible from the file descriptor and {@link FileChannel} refuses to map it.
+ * <p>
+ * The region is protected by a seqlock: the writer makes the sequence number odd before
+ * modifying the records and even again afterwards. The reader retries if the sequence number was
+ * odd or has changed while it was reading. The accesses to the sequence number are ordered with
+ * the accesses to the records by {@link MemoryFences}, so the region is only used on the devices
+ * where they are available: see {@link #isSupported()}.
+ * <p>
+ * Layout of the region (native byte order, both sides are on the same device):
+ * <pre>
+ * HEADER (32 bytes)
+ *  0  int  magic ({@link #MAGIC})
+ *  4  int  layout version ({@link #LAYOUT_VERSION})
+ *  8  int  sequence number (odd while the writer is writing)
+ * 12  int  number of button records
+ * 16  int  number of joystick records
+ * 20       reserved
+ * BUTTON RECORD (32 bytes)
+ *  0  int  1 if the record holds an event, 0 otherwise
+ *  4  int  flagged action
+ *  8  float pressure
+ * 12  int  repeat count
+ * 16  long event time
+ * 24  long first down time
+ * JOYSTICK RECORD (24 bytes)
+ *  0  int  1 if the record holds an event, 0 otherwise
+ *  4  int  flagged action
+ *  8  float x
+ * 12  float y
+ * 16  long event time
+ * </pre>
+ * KEEP IT SYNCED WITH THE VALUE IN FLITCHIO MANAGER.
+ *
+ * @hide
+ */
+public final class SharedSnapshotMemory {
+    /**
+     * @hide
+     */
+    public static final int MAGIC = 0x464c5348; // "FLSH"
+
+    /**
+     * @hide
+     */
+    public static final int LAYOUT_VERSION = 1;
+
+    static final int HEADER_SIZE = 32;
+    static final int BUTTON_RECORD_SIZE = 32;
+    static final int JOYSTICK_RECORD_SIZE = 24;
+
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_SEQUENCE = 8;
+    private static final int OFFSET_BUTTON_COUNT = 12;
+    private static final int OFFSET_JOYSTICK_COUNT = 16;
+
+    /**
+     * Number of attempts to get a consistent read before giving up.
+     * The writer holds the region for a few hundred nanoseconds only, so this is never reached
+     * in practice unless the writer died in the middle of an update.
+     */
+    private static final int MAX_READ_ATTEMPTS = 16;
+
+    /**
+     * Number of attempts made right away, before yielding to let the writer finish its update.
+     */
+    private static final int SPIN_READ_ATTEMPTS = 2;
+
+    private final ParcelFileDescriptor descriptor;
+    private final ByteBuffer memory;
+    private final int joystickOffset;
+
+    private SharedSnapshotMemory(ParcelFileDescriptor descriptor, ByteBuffer memory,
+                                 int buttonRecords) {
+        this.descriptor = descriptor;
+        this.memory = memory;
+        this.joystickOffset = HEADER_SIZE + buttonRecords * BUTTON_RECORD_SIZE;
+    }
+
+    /**
+     * Check whether the region can be used on this device, by both the Manager and the client.
+     * The Manager must not share a region if this returns false.
+     *
+     * @hide
+     */
+    public static boolean isSupported() {
+        return MemoryFences.isAvailable();
+    }
+
+    /**
+     * Compute the size of a region holding the given number of records.
+     *
+     * @hide
+     */
+    public static int getSize(int buttonRecords, int joystickRecords) {
+        return HEADER_SIZE
+                + buttonRecords * BUTTON_RECORD_SIZE
+                + joystickRecords * JOYSTICK_RECORD_SIZE;
+    }
+
+    /**
+     * Write the header of a newly created region. Must be called once by the Manager before
+     * handing the region over.
+     *
+     * @hide
+     */
+    public static void format(@NonNull ByteBuffer memory, int buttonRecords, int joystickRecords) {
+        memory.order(ByteOrder.nativeOrder());
+        memory.putInt(OFFSET_MAGIC, MAGIC);
+        memory.putInt(OFFSET_VERSION, LAYOUT_VERSION);
+        memory.putInt(OFFSET_SEQUENCE, 0);
+        memory.putInt(OFFSET_BUTTON_COUNT, buttonRecords);
+        memory.putInt(OFFSET_JOYSTICK_COUNT, joystickRecords);
+    }
+
+    /**
+     * Publish a new state in a region previously prepared with
+     * {@link #format(ByteBuffer, int, int)}. There must be only one writer.
+     *
+     * @throws UnsupportedOperationException If the region is not supported on this device.
+     * @hide
+     */
+    public static void publish(@NonNull ByteBuffer memory,
+                               @NonNull ButtonEvent[] buttonEvents,
+                               @NonNull JoystickEvent[] joystickEvents) {
+        final int sequence = memory.getInt(OFFSET_SEQUENCE);
+        final int buttonRecords = memory.getInt(OFFSET_BUTTON_COUNT);
+        final int joystickRecords = memory.getInt(OFFSET_JOYSTICK_COUNT);
+
+        memory.putInt(OFFSET_SEQUENCE, sequence + 1); // Odd: write in progress
+        MemoryFences.storeFence();
+
+        int offset = HEADER_SIZE;
+        for (int i = 0; i < buttonRecords; i++, offset += BUTTON_RECORD_SIZE) {
+            ButtonEvent event = i < buttonEvents.length ? buttonEvents[i] : null;
+            if (event == null) {
+                memory.putInt(offset, 0);
+            } else {
+                memory.putInt(offset, 1);
+                memory.putInt(offset + 4, event.flaggedAction);
+                memory.putFloat(offset + 8, event.getPressure());
+                memory.putInt(offset + 12, event.getRepeatCount());
+                memory.putLong(offset + 16, event.eventTime);
+                memory.putLong(offset + 24, event.getFirstDownTime());
+            }
+        }
+        for (int i = 0; i < joystickRecords; i++, offset += JOYSTICK_RECORD_SIZE) {
+            JoystickEvent event = i < joystickEvents.length ? joystickEvents[i] : null;
+            if (event == null) {
+                memory.putInt(offset, 0);
+            } else {
+                memory.putInt(offset, 1);
+                memory.putInt(offset + 4, event.flaggedAction);
+                memory.putFloat(offset + 8, event.getX());
+                memory.putFloat(offset + 12, event.getY());
+                memory.putLong(offset + 16, event.eventTime);
+            }
+        }
+
+        MemoryFences.storeFence();
+        memory.putInt(OFFSET_SEQUENCE, sequence + 2); // Even: write done
+    }
+
+    /**
+     * Map the region received from the Manager.
+     *
+     * @return The mapped region, or null if it cannot be used by this version of the SDK.
+     */
+    @Nullable
+    static SharedSnapshotMemory map(@NonNull ParcelFileDescriptor descriptor) {
+        SharedSnapshotMemory memory = null;
+        try {
+            memory = map(new FileInputStream(descriptor.getFileDescriptor()).getChannel(),
+                    descriptor);
+        } catch (IOException e) {
+            FlitchioLog.e("Could not map snapshot memory: falling back to binder calls");
+        }
+
+        if (memory == null) {
+            try {
+                descriptor.close();
+            } catch (IOException ignored) {
+            }
+        }
+        return memory;
+    }
+
+    /**
+     * Map the region from the given channel.
+     *
+     * @param descriptor The descriptor of the channel, closed by {@link #close()}. May be null.
+     * @return The mapped region, or null if it cannot be used by this version of the SDK.
+     */
+    @Nullable
+    static SharedSnapshotMemory map(@NonNull FileChannel channel,
+                                    @Nullable ParcelFileDescriptor descriptor) throws IOException {
+        if (!isSupported()) {
+            FlitchioLog.w("Snapshot memory is not supported on this device: " +
+                    "falling back to binder calls");
+            return null;
+        }
+
+        // The mapping can't go beyond the size of the file, which is 0 for an ashmem region
+        final long fileSize = channel.size();
+        if (fileSize < HEADER_SIZE) {
+            FlitchioLog.w("Snapshot memory is not a regular file: falling back to binder calls");
+            return null;
+        }
+
+        // The size of the region is only known from its header
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+                .order(ByteOrder.nativeOrder());
+        if (header.getInt(OFFSET_MAGIC) != MAGIC
+                || header.getInt(OFFSET_VERSION) != LAYOUT_VERSION) {
+            FlitchioLog.w("Unsupported snapshot memory layout: falling back to binder calls");
+            return null;
+        }
+
+        int buttonRecords = header.getInt(OFFSET_BUTTON_COUNT);
+        int joystickRecords = header.getInt(OFFSET_JOYSTICK_COUNT);
+        if (buttonRecords < InputElement.BUTTONS.length
+                || joystickRecords < InputElement.JOYSTICKS.length
+                || fileSize < getSize(buttonRecords, joystickRecords)) {
+            FlitchioLog.w("Snapshot memory is too small: falling back to binder calls");
+            return null;
+        }
+
+        ByteBuffer memory = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                getSize(buttonRecords, joystickRecords))
+                .order(ByteOrder.nativeOrder());
+
+        return new SharedSnapshotMemory(descriptor, memory, buttonRecords);
+    }
+
+    /**
+     * Read a consistent snapshot from the region into the given snapshot. This is a plain memory
+     * read and it doesn't allocate anything.
+     *
+     * @param out The snapshot to fill. Its content is undefined if this method returns false.
+     * @return True if a consistent state could be read, false otherwise.
+     */
+    boolean read(@NonNull FlitchioSnapshot out) {
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            if (attempt >= SPIN_READ_ATTEMPTS) {
+                // The writer may have been descheduled in the middle of an update
+                Thread.yield();
+            }
+
+            final int sequenceBefore = memory.getInt(OFFSET_SEQUENCE);
+            if ((sequenceBefore & 1) != 0) {
+                continue; // Write in progress
+            }
+            MemoryFences.loadFence();
+
+            // Records beyond the ones known by this version of the SDK are ignored
+            int offset = HEADER_SIZE;
+            for (int i = 0; i < InputElement.BUTTONS.length; i++, offset += BUTTON_RECORD_SIZE) {
+                if (memory.getInt(offset) != 0) {
+                    out.setButton(i,
+                            memory.getLong(offset + 24),
+                            memory.getLong(offset + 16),
+                            memory.getInt(offset + 4) & ~InputEvent.FLAG_DISPATCH,
+                            memory.getFloat(offset + 8),
+                            memory.getInt(offset + 12));
+                } else {
+                    out.clearButton(i);
+                }
+            }
+            offset = joystickOffset;
+            for (int i = 0; i < InputElement.JOYSTICKS.length;
+                 i++, offset += JOYSTICK_RECORD_SIZE) {
+                if (memory.getInt(offset) != 0) {
+                    out.setJoystick(i,
+                            memory.getLong(offset + 16),
+                            memory.getInt(offset + 4) & ~InputEvent.FLAG_DISPATCH,
+                            memory.getFloat(offset + 8),
+                            memory.getFloat(offset + 12));
+                } else {
+                    out.clearJoystick(i);
+                }
+            }
+
+            MemoryFences.loadFence();
+            if (memory.getInt(OFFSET_SEQUENCE) == sequenceBefore) {
+                return true;
+            }
+        }
+
+        FlitchioLog.w("Could not read a consistent snapshot from shared memory");
+        return false;
+    }
+
+    /**
+     * Release the region. The mapping itself is released when this object is garbage collected.
+     */
+    void close() {
+        if (descriptor == null) {
+            return;
+        }
+
+        try {
+            descriptor.close();
+        } catch (IOException e) {
+            FlitchioLog.w("Could not close snapshot memory");
+        }
+    }
+}
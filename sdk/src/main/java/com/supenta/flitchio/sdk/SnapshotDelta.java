@@ -0,0 +1,219 @@
+package com.supenta.flitchio.sdk;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Not to be used by 3rd-party developers.
+ * <p>
+ * Changes of the state of Flitchio since a given sequence number, returned by
+ * {@link IFlitchioService#getSnapshotSince(int, long)}. The Manager numbers the successive states
+ * with increasing sequence numbers: a delta holds the sequence number of the current state and
+ * the elements that changed since the sequence number passed by the client. If nothing changed,
+ * it holds no element at all, which makes an idle poll almost free.
+ * <p>
+ * Format of the parcel:
+ * <pre>
+ * long sequence number of the current state
+ * int  size of a button record in bytes
+ * int  size of a joystick record in bytes
+ * int  number of button records
+ * BUTTON RECORD
+ *   int   code of the button
+ *   long  event time
+ *   int   action
+ *   float pressure
+ *   int   repeat count
+ *   long  first down time
+ * int  number of joystick records
+ * JOYSTICK RECORD
+ *   int   code of the joystick
+ *   long  event time
+ *   int   action
+ *   float x
+ *   float y
+ * </pre>
+ * Fields appended to the records by future versions are skipped thanks to the record sizes, and
+ * the records of unknown elements are ignored.
+ * KEEP IT SYNCED WITH THE VALUE IN FLITCHIO MANAGER.
+ *
+ * @hide
+ */
+public final class SnapshotDelta implements Parcelable {
+    /**
+     * @hide
+     */
+    public static final Parcelable.Creator<SnapshotDelta> CREATOR =
+            new Parcelable.Creator<SnapshotDelta>() {
+                public SnapshotDelta createFromParcel(Parcel in) {
+                    SnapshotDelta delta = obtain();
+                    delta.readFromParcel(in);
+                    return delta;
+                }
+
+                public SnapshotDelta[] newArray(int size) {
+                    return new SnapshotDelta[size];
+                }
+            };
+
+    /**
+     * Sequence number to pass to get all the elements, when the client has no state yet.
+     *
+     * @hide
+     */
+    public static final long NO_SEQUENCE = 0L;
+
+    private static final int BUTTON_RECORD_SIZE = 32;
+    private static final int JOYSTICK_RECORD_SIZE = 24;
+
+    private static final int MAX_RECYCLED = 2;
+    private static final Pool<SnapshotDelta> pool = new Pool<>(MAX_RECYCLED);
+
+    private long sequence = NO_SEQUENCE;
+    private final FlitchioSnapshot values = new FlitchioSnapshot();
+    private int changedButtons = 0;
+    private int changedJoysticks = 0;
+
+    /**
+     * Create an empty delta.
+     *
+     * @hide
+     */
+    public SnapshotDelta() {
+    }
+
+    /**
+     * Obtain an empty delta from the pool, or a new one if the pool is empty.
+     */
+    static SnapshotDelta obtain() {
+        SnapshotDelta delta = pool.acquire();
+        if (delta == null) {
+            delta = new SnapshotDelta();
+        }
+        return delta;
+    }
+
+    /**
+     * Give this delta back to the pool once it has been applied. The delta must not be used
+     * anymore after calling this method.
+     */
+    void recycle() {
+        changedButtons = 0;
+        changedJoysticks = 0;
+        pool.release(this);
+    }
+
+    /**
+     * Fill this delta with the given elements of the given state.
+     *
+     * @param sequence         The sequence number of the state.
+     * @param changedButtons   A bitmask of the codes of the buttons to include.
+     * @param changedJoysticks A bitmask of the codes of the joysticks to include.
+     * @hide
+     */
+    public void set(long sequence, FlitchioSnapshot state, int changedButtons,
+                    int changedJoysticks) {
+        this.sequence = sequence;
+        this.values.set(state);
+        this.changedButtons = changedButtons;
+        this.changedJoysticks = changedJoysticks;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Overwrite the elements of the given snapshot that are held by this delta.
+     */
+    void applyTo(FlitchioSnapshot snapshot) {
+        for (int i = 0; i < InputElement.BUTTONS.length; i++) {
+            if ((changedButtons & (1 << i)) != 0) {
+                snapshot.copyButton(values, i);
+            }
+        }
+        for (int i = 0; i < InputElement.JOYSTICKS.length; i++) {
+            if ((changedJoysticks & (1 << i)) != 0) {
+                snapshot.copyJoystick(values, i);
+            }
+        }
+    }
+
+    private void readFromParcel(Parcel in) {
+        sequence = in.readLong();
+        final int buttonRecordSize = in.readInt();
+        final int joystickRecordSize = in.readInt();
+
+        changedButtons = 0;
+        final int buttonRecords = in.readInt();
+        for (int i = 0; i < buttonRecords; i++) {
+            final int recordStart = in.dataPosition();
+
+            final int code = in.readInt();
+            if (code >= 0 && code < InputElement.BUTTONS.length) {
+                long eventTime = in.readLong();
+                int action = in.readInt() & ~InputEvent.FLAG_DISPATCH;
+                float pressure = in.readFloat();
+                int repeatCount = in.readInt();
+                long firstDownTime = in.readLong();
+
+                values.setButton(code, firstDownTime, eventTime, action, pressure, repeatCount);
+                changedButtons |= 1 << code;
+            }
+
+            // Skip the fields (or the elements) not handled by this version of the SDK
+            in.setDataPosition(recordStart + buttonRecordSize);
+        }
+
+        changedJoysticks = 0;
+        final int joystickRecords = in.readInt();
+        for (int i = 0; i < joystickRecords; i++) {
+            final int recordStart = in.dataPosition();
+
+            final int code = in.readInt();
+            if (code >= 0 && code < InputElement.JOYSTICKS.length) {
+                long eventTime = in.readLong();
+                int action = in.readInt() & ~InputEvent.FLAG_DISPATCH;
+                float x = in.readFloat();
+                float y = in.readFloat();
+
+                values.setJoystick(code, eventTime, action, x, y);
+                changedJoysticks |= 1 << code;
+            }
+
+            in.setDataPosition(recordStart + joystickRecordSize);
+        }
+    }
+
+    /**
+     * @hide
+     */
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    /**
+     * @hide
+     */
+    @Override
+    public void writeToParcel(Parcel out, int flags) {
+        out.writeLong(sequence);
+        out.writeInt(BUTTON_RECORD_SIZE);
+        out.writeInt(JOYSTICK_RECORD_SIZE);
+
+        out.writeInt(Integer.bitCount(changedButtons));
+        for (int i = 0; i < InputElement.BUTTONS.length; i++) {
+            if ((changedButtons & (1 << i)) != 0) {
+                values.writeButtonRecord(out, i);
+            }
+        }
+
+        out.writeInt(Integer.bitCount(changedJoysticks));
+        for (int i = 0; i < InputElement.JOYSTICKS.length; i++) {
+            if ((changedJoysticks & (1 << i)) != 0) {
+                values.writeJoystickRecord(out, i);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.supenta.flitchio.sdk;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Refreshes the state of Flitchio at a fixed rate on a background thread, so that
+ * {@link FlitchioController#obtainSnapshot(FlitchioSnapshot)} can return the latest cached state
+ * in constant time instead of blocking for a binder round trip.
+ * <p>
+ * The snapshots are triple-buffered: the refresher fills its own back snapshot, then publishes
+ * it by swapping it with the one held by {@link #published}. The reader swaps its front snapshot
+ * with the published one when the latter is newer. Each of the three snapshots is therefore
+ * owned by a single thread at a time, and neither side locks nor allocates.
+ */
+final class SnapshotPrefetcher {
+    private final FlitchioController controller;
+    private final long periodNanos;
+    private final long maxStalenessNanos;
+
+    private final AtomicReference<FlitchioSnapshot> published =
+            new AtomicReference<>(new FlitchioSnapshot());
+    private final Refresher refresher = new Refresher();
+
+    /**
+     * Only accessed by the reader, which is serialized by {@link #read(FlitchioSnapshot)}.
+     */
+    private FlitchioSnapshot front = new FlitchioSnapshot();
+
+    private SnapshotPrefetcher(FlitchioController controller, long periodNanos,
+                               long maxStalenessNanos) {
+        this.controller = controller;
+        this.periodNanos = periodNanos;
+        this.maxStalenessNanos = maxStalenessNanos;
+    }
+
+    @NonNull
+    static SnapshotPrefetcher start(@NonNull FlitchioController controller, int refreshRateHz,
+                                    long maxStalenessNanos) {
+        SnapshotPrefetcher prefetcher = new SnapshotPrefetcher(controller,
+                1000L * 1000L * 1000L / refreshRateHz, maxStalenessNanos);
+        prefetcher.refresher.start();
+        return prefetcher;
+    }
+
+    /**
+     * Copy the latest prefetched state into the given snapshot.
+     *
+     * @return False if the latest prefetched state is older than the maximum staleness: the
+     * caller should read the state synchronously instead. The snapshot is left untouched.
+     */
+    synchronized boolean read(FlitchioSnapshot reuse) {
+        final FlitchioSnapshot latest = published.get();
+        if (latest.getCaptureTime() - front.getCaptureTime() > 0L) {
+            /*
+             * The refresher only ever publishes newer snapshots, so whatever is swapped out here
+             * is at least as recent as the one checked above.
+             */
+            front = published.getAndSet(front);
+        }
+
+        if (front.getAgeNanos() > maxStalenessNanos) {
+            return false;
+        }
+
+        reuse.set(front);
+        return true;
+    }
+
+    /**
+     * Stop refreshing. The snapshots are not read anymore after this method returns.
+     */
+    void stop() {
+        refresher.interrupt();
+        try {
+            refresher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class Refresher extends Thread {
+        private FlitchioSnapshot back = new FlitchioSnapshot();
+
+        Refresher() {
+            super("FlitchioPrefetcher");
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                final long start = System.nanoTime();
+
+                controller.readSnapshot(back);
+                back = published.getAndSet(back); // Publishes the snapshot
+
+                LockSupport.parkNanos(periodNanos - (System.nanoTime() - start));
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.supenta.flitchio.sdk;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * State of Flitchio reconstructed on the client side by applying the received events, so that a
+ * controller which receives the events anyway can be polled without IPC.
+ * <p>
+ * The table is resynchronised with the state held by the Manager when it can't be trusted: when
+ * the client (re-)registers, since the events sent before are missed, and when the events
+ * received reveal a gap (for instance a button released while the table holds it released
+ * already).
+ * <p>
+ * It is fed on the binder thread and read on the polling thread. Both are short copies into
+ * preallocated arrays, done under the lock of this object.
+ */
+final class SnapshotStateTable {
+    private final FlitchioSnapshot state = new FlitchioSnapshot();
+    private final AtomicBoolean resyncRequested = new AtomicBoolean(true);
+
+    /**
+     * Take into account a button event received from the Manager.
+     */
+    synchronized void onButtonEvent(int buttonCode, long firstDownTime, long eventTime,
+                                    int flaggedAction, float pressure, int repeatCount) {
+        final int action = flaggedAction & ~InputEvent.FLAG_DISPATCH;
+        final int previousState = state.getButtonState(buttonCode);
+        final boolean wasPressed = previousState == FlitchioSnapshot.STATE_PRESSING
+                || previousState == FlitchioSnapshot.STATE_PRESSED;
+
+        final boolean missedEvents;
+        switch (action) {
+            case InputEvent.ACTION_DOWN:
+                missedEvents = wasPressed;
+                break;
+            case InputEvent.ACTION_MOVE:
+            case InputEvent.ACTION_UP:
+                missedEvents = !wasPressed;
+                break;
+            default:
+                missedEvents = false;
+                break;
+        }
+
+        if (missedEvents) {
+            FlitchioLog.w("Gap detected in the events of button " + buttonCode +
+                    ": the state will be resynchronised");
+            requestResync();
+        }
+
+        state.setButton(buttonCode, firstDownTime, eventTime, action, pressure, repeatCount);
+    }
+
+    /**
+     * Take into account a joystick event received from the Manager.
+     */
+    synchronized void onJoystickEvent(int joystickCode, long eventTime, int flaggedAction, float x,
+                                      float y) {
+        state.setJoystick(joystickCode, eventTime, flaggedAction & ~InputEvent.FLAG_DISPATCH, x,
+                y);
+    }
+
+    /**
+     * Take into account the events of device 0 in a batch received from the Manager.
+     */
+    synchronized void onEventBatch(EventBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (!batch.isKnown(i) || batch.getDeviceId(i) != 0) {
+                continue;
+            }
+
+            if (batch.getKind(i) == EventBatch.KIND_BUTTON) {
+                onButtonEvent(batch.getCode(i), batch.getFirstDownTime(i),
+                        batch.getEventTime(i), batch.getFlaggedAction(i), batch.getPressure(i),
+                        batch.getRepeatCount(i));
+            } else {
+                onJoystickEvent(batch.getCode(i), batch.getEventTime(i),
+                        batch.getFlaggedAction(i), batch.getX(i), batch.getY(i));
+            }
+        }
+    }
+
+    /**
+     * Mark the table as out of sync with the Manager.
+     */
+    void requestResync() {
+        resyncRequested.set(true);
+    }
+
+    /**
+     * Check whether the table has to be resynchronised, and clear the request. A request made
+     * after this call is kept for the next one.
+     */
+    boolean takeResyncRequest() {
+        return resyncRequested.getAndSet(false);
+    }
+
+    /**
+     * Overwrite the table with the state read from the Manager. The elements for which an event
+     * newer than that state has already been received are kept as they are.
+     */
+    synchronized void resync(FlitchioSnapshot fromManager) {
+        for (int i = 0; i < InputElement.BUTTONS.length; i++) {
+            if (fromManager.getButtonEventTime(i) >= state.getButtonEventTime(i)) {
+                state.copyButton(fromManager, i);
+            }
+        }
+        for (int i = 0; i < InputElement.JOYSTICKS.length; i++) {
+            if (fromManager.getJoystickEventTime(i) >= state.getJoystickEventTime(i)) {
+                state.copyJoystick(fromManager, i);
+            }
+        }
+    }
+
+    /**
+     * Copy the reconstructed state into the given snapshot.
+     */
+    synchronized void readInto(FlitchioSnapshot snapshot) {
+        snapshot.set(state);
+        snapshot.setCaptureTime(System.nanoTime());
+    }
+}
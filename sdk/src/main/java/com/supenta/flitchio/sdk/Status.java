@@ -86,6 +86,15 @@ public class Status {
      */
     public final int failureReason;
 
+    /**
+     * Shared instances of the non-failing statuses, indexed by code. Statuses are immutable, so
+     * the status changes don't need to allocate.
+     */
+    private static final Status[] NON_FAILING = {
+            new Status(UNBOUND), new Status(BINDING), null, new Status(BOUND),
+            new Status(CONNECTED), new Status(DISCONNECTED)
+    };
+
     /**
      * Create a new non-failing status.
      *
@@ -95,6 +104,18 @@ public class Status {
         this(code, FailingStatus.NOT_FAILED);
     }
 
+    /**
+     * Get the shared instance of a non-failing status.
+     *
+     * @param code Identifier for this status: one of the {@link Status} constants.
+     */
+    static Status of(int code) {
+        if (code >= 0 && code < NON_FAILING.length && NON_FAILING[code] != null) {
+            return NON_FAILING[code];
+        }
+        return new Status(code);
+    }
+
     private Status(int code, int failureReason) {
         this.code = code;
         this.failureReason = failureReason;
@@ -0,0 +1,713 @@
+package com.supenta.flitchio.sdk;
+
+import android.content.ComponentName;
+import android.os.ParcelFileDescriptor;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Not to be used by 3rd-party developers outside of their tests.
+ * <p/>
+ * In-process stand-in for the service of Flitchio Manager, generating synthetic input. It lets
+ * you load-test the input handling of your app without Flitchio Manager nor Flitchio, under a
+ * controlled and reproducible load: call {@link #attachTo(FlitchioController,
+ * FlitchioStatusListener)} instead of {@link FlitchioController#onCreate(FlitchioStatusListener)}.
+ * <p/>
+ * <strong>This is for testing only.</strong> Do not ship it enabled in your app.
+ * <p/>
+ * The input is generated on a dedicated thread, in one of the following modes:
+ * <ul>
+ * <li>{@link #startFixedRate(int)}: events at a fixed rate, up to several kHz;</li>
+ * <li>{@link #startBursts(int, int)}: bursts of events received at once;</li>
+ * <li>{@link #startScript(Script, boolean)}: a scripted sequence of button and joystick
+ * events;</li>
+ * <li>{@link #startReplay(File, boolean, boolean)}: the events of a recording made with
+ * {@link FlitchioController#startRecording(File)}.</li>
+ * </ul>
+ * The generated input is deterministic: two runs with the same parameters produce the same
+ * sequence of events.
+ *
+ * @hide
+ */
+public final class SyntheticFlitchioService extends IFlitchioService.Stub {
+    private static final int AUTH_TOKEN = 1;
+
+    /**
+     * In fixed-rate and burst modes, the top button is pressed or released every so many events.
+     */
+    private static final int EVENTS_PER_BUTTON_TOGGLE = 50;
+
+    /**
+     * In fixed-rate and burst modes, the top joystick makes a full turn every so many events.
+     */
+    private static final int EVENTS_PER_TURN = 360;
+    private static final float RADIUS = 0.8f;
+
+    private final CopyOnWriteArrayList<IFlitchioClient> clients = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<IFlitchioClient> statusClients =
+            new CopyOnWriteArrayList<>();
+
+    /**
+     * Current state of Flitchio, returned by {@link #getSnapshot(int)}. Guarded by itself.
+     */
+    private final FlitchioSnapshot state = new FlitchioSnapshot();
+    private final long[] firstDownTimes = new long[InputElement.BUTTONS.length];
+
+    /*
+     * Sequence number of the current state, and of the last change of each element, returned by
+     * getSnapshotSince(). Guarded by the state.
+     */
+    private long sequence = SnapshotDelta.NO_SEQUENCE;
+    private final long[] buttonSequences = new long[InputElement.BUTTONS.length];
+    private final long[] joystickSequences = new long[InputElement.JOYSTICKS.length];
+
+    private final AtomicLong generatedEventCount = new AtomicLong(0L);
+
+    /**
+     * Sequence number of the latest event sent, if the client agreed on
+     * {@link Capabilities#EVENT_SEQUENCE}.
+     */
+    private final AtomicInteger eventSequence = new AtomicInteger(0);
+
+    private volatile boolean connected = true;
+    private volatile boolean batching = false;
+    private int negotiatedCapabilities = Capabilities.NONE;
+
+    private Generator generator = null;
+
+    /**
+     * Create a service that reports Flitchio as connected and doesn't generate anything until one
+     * of the start methods is called.
+     *
+     * @since 0.8.0
+     */
+    public SyntheticFlitchioService() {
+    }
+
+    /**
+     * Initialise the given controller with this service instead of binding it to Flitchio
+     * Manager, in place of {@link FlitchioController#onCreate(FlitchioStatusListener)}. All the
+     * features of the controller work as usual, but the status, the snapshots and the events come
+     * from this service.
+     *
+     * @param controller     The controller to initialise.
+     * @param statusListener The listener for status changes.
+     * @since 0.8.0
+     */
+    @MainThread
+    public void attachTo(@NonNull FlitchioController controller,
+                         @Nullable FlitchioStatusListener statusListener) {
+        controller.onCreate(statusListener, this);
+    }
+
+    /**
+     * Set whether Flitchio is reported as connected. It is by default.
+     *
+     * @since 0.8.0
+     */
+    public void setConnected(boolean connected) {
+        if (this.connected == connected) {
+            return;
+        }
+
+        this.connected = connected;
+        for (IFlitchioClient client : statusClients) {
+            try {
+                client.onStatusChanged(connected ? Status.CONNECTED : Status.DISCONNECTED);
+            } catch (RemoteException e) {
+                statusClients.remove(client);
+            }
+        }
+    }
+
+    /**
+     * Set whether the events of a burst are delivered in a single batch, as done by the
+     * Flitchio Managers that support it. It is disabled by default. This must be called before
+     * the controller is created to take effect.
+     *
+     * @since 0.8.0
+     */
+    public void setBatching(boolean batching) {
+        this.batching = batching;
+    }
+
+    /**
+     * Generate events at a fixed rate: the top joystick keeps turning and the top button is
+     * pressed and released periodically. When the app doesn't keep up, the generator doesn't skip
+     * events but sends the late ones as fast as possible.
+     *
+     * @param eventsPerSecond The rate of events, for instance 1000 for 1 kHz.
+     * @since 0.8.0
+     */
+    public synchronized void startFixedRate(int eventsPerSecond) {
+        start(new Generator(1000000000L / eventsPerSecond, 1, null, null, false, false));
+    }
+
+    /**
+     * Generate bursts of events: each burst is made of events of the same kind as
+     * {@link #startFixedRate(int)}, sent back to back.
+     *
+     * @param eventsPerBurst  The number of events in each burst.
+     * @param burstsPerSecond The rate of the bursts.
+     * @since 0.8.0
+     */
+    public synchronized void startBursts(int eventsPerBurst, int burstsPerSecond) {
+        start(new Generator(1000000000L / burstsPerSecond, eventsPerBurst, null, null, false,
+                false));
+    }
+
+    /**
+     * Play a script of events.
+     *
+     * @param script The script to play.
+     * @param loop   True to play it again and again until {@link #stop()} is called.
+     * @since 0.8.0
+     */
+    public synchronized void startScript(@NonNull Script script, boolean loop) {
+        start(new Generator(0L, 0, script, null, loop, false));
+    }
+
+    /**
+     * Replay a recording made with {@link FlitchioController#startRecording(File)}. The file is
+     * memory-mapped. The events are sent with their original action, values and spacing, but
+     * with times in the current time base.
+     *
+     * @param recording      The recording to replay.
+     * @param originalTiming True to replay the events at their original pace, false to send
+     *                       them as fast as possible.
+     * @param loop           True to play it again and again until {@link #stop()} is called.
+     * @throws IOException If the file can't be read or isn't a recording.
+     * @since 0.8.0
+     */
+    public synchronized void startReplay(@NonNull File recording, boolean originalTiming,
+                                         boolean loop) throws IOException {
+        start(new Generator(0L, 0, null, InputRecording.open(recording), loop, originalTiming));
+    }
+
+    /**
+     * Stop generating events. Nothing happens if no generation is ongoing.
+     *
+     * @since 0.8.0
+     */
+    public synchronized void stop() {
+        if (generator != null) {
+            generator.interrupt();
+            try {
+                generator.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            generator = null;
+        }
+    }
+
+    /**
+     * Retrieve the number of events generated since this service was created.
+     *
+     * @since 0.8.0
+     */
+    public long getGeneratedEventCount() {
+        return generatedEventCount.get();
+    }
+
+    private void start(Generator newGenerator) {
+        stop();
+        generator = newGenerator;
+        generator.start();
+    }
+
+    /*
+     * IMPLEMENTATION OF THE SERVICE
+     */
+
+    /**
+     * @hide
+     */
+    @Override
+    public FlitchioSnapshot getSnapshot(int authToken) throws RemoteException {
+        FlitchioSnapshot snapshot = new FlitchioSnapshot();
+        synchronized (state) {
+            snapshot.set(state);
+        }
+        snapshot.setFlatParcel(
+                Capabilities.has(negotiatedCapabilities, Capabilities.FLAT_SNAPSHOT));
+        return snapshot;
+    }
+
+    /**
+     * @hide
+     */
+    @Override
+    public boolean isConnected(int authToken) throws RemoteException {
+        return connected;
+    }
+
+    /**
+     * @hide
+     */
+    @Override
+    public void registerClient(int authToken, IFlitchioClient client) throws RemoteException {
+        clients.addIfAbsent(client);
+    }
+
+    /**
+     * @hide
+     */
+    @Override
+    public void unregisterClient(int authToken, IFlitchioClient client) throws RemoteException {
+        clients.remove(client);
+    }
+
+    /**
+     * @hide
+     */
+    @Override
+    public int receiveClientInfo(ComponentName componentName) throws RemoteException {
+        return AUTH_TOKEN;
+    }
+
+    /**
+     * @hide
+     */
+    @Override
+    public void removeClientInfo(int authToken) throws RemoteException {
+        clients.clear();
+        statusClients.clear();
+    }
+
+    /**
+     * No shared memory: the snapshots are always obtained with {@link #getSnapshot(int)}.
+     *
+     * @hide
+     */
+    @Override
+    public ParcelFileDescriptor getSnapshotMemory(int authToken) throws RemoteException {
+        return null;
+    }
+
+    /**
+     * @hide
+     */
+    @Override
+    public int negotiateCapabilities(int authToken, int clientCapabilities)
+            throws RemoteException {
+        final int supported = Capabilities.STATUS_CALLBACK | Capabilities.FLAT_SNAPSHOT
+                | Capabilities.DELTA_SNAPSHOT | Capabilities.EVENT_SEQUENCE;
+        negotiatedCapabilities = clientCapabilities & (batching
+                ? supported | Capabilities.EVENT_BATCH
+                : supported);
+        return negotiatedCapabilities;
+    }
+
+    /**
+     * Never called: filtering isn't negotiated, so the client filters the events on its side.
+     *
+     * @hide
+     */
+    @Override
+    public void registerClientWithFilter(int authToken, IFlitchioClient client, int buttonMask,
+                                         int joystickMask, float minJoystickDelta,
+                                         int maxJoystickRate) throws RemoteException {
+        registerClient(authToken, client);
+    }
+
+    /**
+     * @hide
+     */
+    @Override
+    public void registerStatusCallback(int authToken, IFlitchioClient client)
+            throws RemoteException {
+        statusClients.addIfAbsent(client);
+    }
+
+    /**
+     * @hide
+     */
+    @Override
+    public void unregisterStatusCallback(int authToken, IFlitchioClient client)
+            throws RemoteException {
+        statusClients.remove(client);
+    }
+
+    /**
+     * @hide
+     */
+    @Override
+    public SnapshotDelta getSnapshotSince(int authToken, long lastSequence)
+            throws RemoteException {
+        // The client owns the delta: it recycles it once applied
+        SnapshotDelta delta = SnapshotDelta.obtain();
+        synchronized (state) {
+            int changedButtons = 0;
+            for (int i = 0; i < buttonSequences.length; i++) {
+                if (buttonSequences[i] > lastSequence) {
+                    changedButtons |= 1 << i;
+                }
+            }
+            int changedJoysticks = 0;
+            for (int i = 0; i < joystickSequences.length; i++) {
+                if (joystickSequences[i] > lastSequence) {
+                    changedJoysticks |= 1 << i;
+                }
+            }
+            delta.set(sequence, state, changedButtons, changedJoysticks);
+        }
+        return delta;
+    }
+
+    /**
+     * Never called: the synthetic input comes from a single device, so
+     * {@link Capabilities#MULTI_DEVICE} isn't negotiated.
+     *
+     * @hide
+     */
+    @Override
+    public MultiDeviceSnapshot getMultiDeviceSnapshot(int authToken) throws RemoteException {
+        return null;
+    }
+
+    /*
+     * GENERATION
+     */
+
+    private void sendButton(EventBatch batch, int buttonCode, int action, float pressure) {
+        final long now = SystemClock.uptimeMillis();
+        if (action == InputEvent.ACTION_DOWN) {
+            firstDownTimes[buttonCode] = now;
+        }
+        sendButton(batch, buttonCode, firstDownTimes[buttonCode], now, action, pressure, 0);
+    }
+
+    private void sendButton(EventBatch batch, int buttonCode, long firstDownTime, long eventTime,
+                            int flaggedAction, float pressure, int repeatCount) {
+        synchronized (state) {
+            state.setButton(buttonCode, firstDownTime, eventTime,
+                    flaggedAction & ~InputEvent.FLAG_DISPATCH, pressure, repeatCount);
+            buttonSequences[buttonCode] = ++sequence;
+        }
+        final int eventSequence = nextEventSequence();
+
+        if (batch != null) {
+            batch.addButton(buttonCode, firstDownTime, eventTime, flaggedAction, pressure,
+                    repeatCount, eventSequence, 0);
+        } else {
+            for (IFlitchioClient client : clients) {
+                try {
+                    // The client owns the event: it gets its own one
+                    ButtonEvent event = ButtonEvent.obtain(InputElement.BUTTONS[buttonCode],
+                            firstDownTime, eventTime, flaggedAction, pressure, repeatCount);
+                    event.sequence = eventSequence;
+                    client.onButtonEvent(event);
+                } catch (RemoteException e) {
+                    clients.remove(client);
+                }
+            }
+        }
+        generatedEventCount.incrementAndGet();
+    }
+
+    private void sendJoystick(EventBatch batch, int joystickCode, int action, float x, float y) {
+        final long now = SystemClock.uptimeMillis();
+
+        synchronized (state) {
+            state.setJoystick(joystickCode, now, action & ~InputEvent.FLAG_DISPATCH, x, y);
+            joystickSequences[joystickCode] = ++sequence;
+        }
+        final int eventSequence = nextEventSequence();
+
+        if (batch != null) {
+            batch.addJoystick(joystickCode, now, action, x, y, eventSequence, 0);
+        } else {
+            for (IFlitchioClient client : clients) {
+                try {
+                    // The client owns the event: it gets its own one
+                    JoystickEvent event = JoystickEvent.obtain(
+                            InputElement.JOYSTICKS[joystickCode], now, action, x, y);
+                    event.sequence = eventSequence;
+                    client.onJoystickEvent(event);
+                } catch (RemoteException e) {
+                    clients.remove(client);
+                }
+            }
+        }
+        generatedEventCount.incrementAndGet();
+    }
+
+    /**
+     * @return The sequence number of the next event, or 0 if the events aren't numbered.
+     */
+    private int nextEventSequence() {
+        if (!Capabilities.has(negotiatedCapabilities, Capabilities.EVENT_SEQUENCE)) {
+            return 0;
+        }
+
+        // 0 means "no sequence number": it is skipped on wrap-around
+        int next = eventSequence.incrementAndGet();
+        if (next == 0) {
+            next = eventSequence.incrementAndGet();
+        }
+        return next;
+    }
+
+    private void sendBatch(EventBatch batch) {
+        for (IFlitchioClient client : clients) {
+            try {
+                // The client owns the batch: it gets its own copy
+                EventBatch copy = EventBatch.obtain();
+                copy.set(batch);
+                client.onEventBatch(copy);
+            } catch (RemoteException e) {
+                clients.remove(client);
+            }
+        }
+        batch.clear();
+    }
+
+    /**
+     * Thread generating the events. It is the only one calling the clients, like the single
+     * binder thread delivering the oneway calls of Flitchio Manager.
+     */
+    private class Generator extends Thread {
+        private final long periodNanos;
+        private final int eventsPerPeriod;
+        private final Script script;
+        private final InputRecording recording;
+        private final boolean loop;
+        private final boolean originalTiming;
+
+        private long tick = 0L;
+        private boolean buttonPressed = false;
+
+        Generator(long periodNanos, int eventsPerPeriod, Script script, InputRecording recording,
+                  boolean loop, boolean originalTiming) {
+            super("SyntheticFlitchio");
+            this.periodNanos = periodNanos;
+            this.eventsPerPeriod = eventsPerPeriod;
+            this.script = script;
+            this.recording = recording;
+            this.loop = loop;
+            this.originalTiming = originalTiming;
+        }
+
+        @Override
+        public void run() {
+            final EventBatch batch =
+                    Capabilities.has(negotiatedCapabilities, Capabilities.EVENT_BATCH)
+                            ? new EventBatch()
+                            : null;
+
+            if (script != null) {
+                do {
+                    playScript(batch);
+                } while (loop && !isInterrupted());
+            } else if (recording != null) {
+                do {
+                    playRecording(batch);
+                } while (loop && !isInterrupted());
+            } else {
+                long deadline = System.nanoTime();
+                while (!isInterrupted()) {
+                    for (int i = 0; i < eventsPerPeriod; i++) {
+                        generate(batch);
+                    }
+                    if (batch != null) {
+                        sendBatch(batch);
+                    }
+
+                    deadline += periodNanos;
+                    if (!sleepUntil(deadline)) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Generate the next event of the fixed-rate and burst modes.
+         */
+        private void generate(EventBatch batch) {
+            if (tick % EVENTS_PER_BUTTON_TOGGLE == EVENTS_PER_BUTTON_TOGGLE - 1) {
+                buttonPressed = !buttonPressed;
+                sendButton(batch, InputElement.BUTTON_TOP.code,
+                        buttonPressed ? InputEvent.ACTION_DOWN : InputEvent.ACTION_UP,
+                        buttonPressed ? 1.0f : 0.0f);
+            } else {
+                final double angle = 2.0 * Math.PI * (tick % EVENTS_PER_TURN) / EVENTS_PER_TURN;
+                sendJoystick(batch, InputElement.JOYSTICK_TOP.code, InputEvent.ACTION_MOVE,
+                        (float) (RADIUS * Math.cos(angle)), (float) (RADIUS * Math.sin(angle)));
+            }
+            tick++;
+        }
+
+        private void playScript(EventBatch batch) {
+            long deadline = System.nanoTime();
+
+            for (int i = 0; i < script.size && !isInterrupted(); i++) {
+                switch (script.kind[i]) {
+                    case Script.STEP_BUTTON:
+                        sendButton(batch, script.code[i], script.action[i], script.x[i]);
+                        break;
+                    case Script.STEP_JOYSTICK:
+                        sendJoystick(batch, script.code[i], script.action[i], script.x[i],
+                                script.y[i]);
+                        break;
+                    case Script.STEP_WAIT:
+                        if (batch != null && batch.size() > 0) {
+                            sendBatch(batch);
+                        }
+                        deadline += script.delayNanos[i];
+                        if (!sleepUntil(Math.max(deadline, System.nanoTime()))) {
+                            return;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (batch != null && batch.size() > 0) {
+                sendBatch(batch);
+            }
+        }
+
+        private void playRecording(EventBatch batch) {
+            long deadline = System.nanoTime();
+
+            recording.rewind();
+            while (!isInterrupted() && recording.next()) {
+                if (originalTiming && recording.getTimeDelta() > 0) {
+                    if (batch != null && batch.size() > 0) {
+                        sendBatch(batch);
+                    }
+                    deadline += recording.getTimeDelta() * 1000000L;
+                    if (!sleepUntil(Math.max(deadline, System.nanoTime()))) {
+                        return;
+                    }
+                }
+
+                final long now = SystemClock.uptimeMillis();
+                final int code = recording.getCode();
+                if (recording.getKind() == EventRing.KIND_BUTTON) {
+                    if (code < InputElement.BUTTONS.length) {
+                        sendButton(batch, code, now - recording.getDownDuration(), now,
+                                recording.getFlaggedAction(), recording.getValue0(),
+                                recording.getRepeatCount());
+                    }
+                } else if (recording.getKind() == EventRing.KIND_JOYSTICK) {
+                    if (code < InputElement.JOYSTICKS.length) {
+                        sendJoystick(batch, code, recording.getFlaggedAction(),
+                                recording.getValue0(), recording.getValue1());
+                    }
+                }
+            }
+            if (batch != null && batch.size() > 0) {
+                sendBatch(batch);
+            }
+        }
+
+        /**
+         * @return False if the thread has been interrupted.
+         */
+        private boolean sleepUntil(long deadline) {
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0L) {
+                LockSupport.parkNanos(remaining);
+                if (isInterrupted()) {
+                    return false;
+                }
+            }
+            return !isInterrupted();
+        }
+    }
+
+    /**
+     * Sequence of button events, joystick events and waits, to be played by
+     * {@link #startScript(Script, boolean)}. The events separated by no wait are sent back to back
+     * (and in the same batch if batching is enabled).
+     *
+     * @since 0.8.0
+     */
+    public static final class Script {
+        static final int STEP_BUTTON = 0;
+        static final int STEP_JOYSTICK = 1;
+        static final int STEP_WAIT = 2;
+
+        private int size = 0;
+        private int[] kind = new int[16];
+        private int[] code = new int[16];
+        private int[] action = new int[16];
+        private float[] x = new float[16];
+        private float[] y = new float[16];
+        private long[] delayNanos = new long[16];
+
+        /**
+         * Append a button event.
+         *
+         * @param action   One of {@link InputEvent#ACTION_DOWN}, {@link InputEvent#ACTION_MOVE}
+         *                 or {@link InputEvent#ACTION_UP}.
+         * @param pressure From 0.0 to 1.0.
+         * @return This script.
+         * @since 0.8.0
+         */
+        public Script button(@NonNull InputElement.Button button, int action, float pressure) {
+            append(STEP_BUTTON, button.code, action, pressure, 0.0f, 0L);
+            return this;
+        }
+
+        /**
+         * Append a joystick event.
+         *
+         * @param action One of {@link InputEvent#ACTION_DOWN}, {@link InputEvent#ACTION_MOVE}
+         *               or {@link InputEvent#ACTION_UP}.
+         * @return This script.
+         * @since 0.8.0
+         */
+        public Script joystick(@NonNull InputElement.Joystick joystick, int action,
+                               float x, float y) {
+            append(STEP_JOYSTICK, joystick.code, action, x, y, 0L);
+            return this;
+        }
+
+        /**
+         * Append a wait, relatively to the end of the previous wait so that the script doesn't
+         * drift.
+         *
+         * @return This script.
+         * @since 0.8.0
+         */
+        public Script waitMicros(long delayMicros) {
+            append(STEP_WAIT, 0, 0, 0.0f, 0.0f, delayMicros * 1000L);
+            return this;
+        }
+
+        private void append(int kind, int code, int action, float x, float y, long delayNanos) {
+            if (size == this.kind.length) {
+                final int capacity = size * 2;
+                this.kind = Arrays.copyOf(this.kind, capacity);
+                this.code = Arrays.copyOf(this.code, capacity);
+                this.action = Arrays.copyOf(this.action, capacity);
+                this.x = Arrays.copyOf(this.x, capacity);
+                this.y = Arrays.copyOf(this.y, capacity);
+                this.delayNanos = Arrays.copyOf(this.delayNanos, capacity);
+            }
+
+            this.kind[size] = kind;
+            this.code[size] = code;
+            this.action[size] = action;
+            this.x[size] = x;
+            this.y[size] = y;
+            this.delayNanos[size] = delayNanos;
+            size++;
+        }
+    }
+}
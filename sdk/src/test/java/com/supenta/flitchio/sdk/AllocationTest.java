@@ -0,0 +1,119 @@
+package com.supenta.flitchio.sdk;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that the steady state of the poll path and of the event path allocates nothing, by
+ * counting the bytes allocated by the current thread. This relies on an extension of the
+ * HotSpot JVM: the tests are skipped on the JVMs without it.
+ * <p>
+ * The counter itself may allocate a few bytes per reading, so a test fails when the average
+ * per iteration reaches 1 byte, which any allocation per iteration exceeds by far.
+ */
+public class AllocationTest {
+    private static final int WARM_UP_ITERATIONS = 20000;
+    private static final int ITERATIONS = 100000;
+
+    private com.sun.management.ThreadMXBean threadBean;
+
+    @Before
+    public void setUp() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue("Allocation counting not supported by this JVM",
+                bean instanceof com.sun.management.ThreadMXBean);
+
+        threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue("Allocation counting not supported by this JVM",
+                threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    private long allocatedBytes() {
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private void assertAllocationFree(String path, Runnable iteration) {
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            iteration.run();
+        }
+
+        final long before = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            iteration.run();
+        }
+        final long allocated = allocatedBytes() - before;
+
+        assertTrue(path + " allocated " + allocated + " bytes in " + ITERATIONS + " iterations",
+                allocated < ITERATIONS);
+    }
+
+    @Test
+    public void pollFromSharedMemoryIntoReusedSnapshot() throws IOException {
+        File file = File.createTempFile("snapshot", ".mem");
+        try (RandomAccessFile writerFile = new RandomAccessFile(file, "rw");
+             FileInputStream readerFile = new FileInputStream(file)) {
+            final int buttons = InputElement.BUTTONS.length;
+            final int joysticks = InputElement.JOYSTICKS.length;
+            final int size = SharedSnapshotMemory.getSize(buttons, joysticks);
+            writerFile.setLength(size);
+            ByteBuffer writer = writerFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    size);
+            SharedSnapshotMemory.format(writer, buttons, joysticks);
+            ButtonEvent[] buttonEvents = new ButtonEvent[buttons];
+            buttonEvents[0] = new ButtonEvent(InputElement.BUTTONS[0], 1L, 2L,
+                    InputEvent.ACTION_DOWN, 1.0f, 0);
+            JoystickEvent[] joystickEvents = new JoystickEvent[joysticks];
+            joystickEvents[0] = new JoystickEvent(InputElement.JOYSTICKS[0], 2L,
+                    InputEvent.ACTION_MOVE, 0.5f, 0.5f);
+            SharedSnapshotMemory.publish(writer, buttonEvents, joystickEvents);
+
+            final SharedSnapshotMemory memory =
+                    SharedSnapshotMemory.map(readerFile.getChannel(), null);
+            assumeTrue("Shared memory not supported by this JVM", memory != null);
+
+            final FlitchioSnapshot reuse = new FlitchioSnapshot();
+            assertAllocationFree("Poll", new Runnable() {
+                @Override
+                public void run() {
+                    memory.read(reuse);
+                }
+            });
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void handOverRecycledEventsThroughRing() {
+        final EventRing ring = new EventRing(64);
+        assertAllocationFree("Event path", new Runnable() {
+            @Override
+            public void run() {
+                ring.offerButton(0, 0, 1L, 2L, InputEvent.ACTION_DOWN, 1.0f, 0, 0L);
+                ring.offerJoystick(0, 0, 2L, InputEvent.ACTION_MOVE, 0.5f, -0.5f, 0L);
+
+                final long end = ring.getWriteIndex();
+                for (long index = ring.getReadIndex(); index < end; index++) {
+                    if (ring.getKind(index) == EventRing.KIND_BUTTON) {
+                        ring.obtainButtonEvent(index).recycle();
+                    } else {
+                        ring.obtainJoystickEvent(index).recycle();
+                    }
+                }
+                ring.release(end);
+            }
+        });
+    }
+}
@@ -0,0 +1,101 @@
+package com.supenta.flitchio.sdk;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class DpadDeriverTest {
+    private static final InputElement.Joystick JOYSTICK = InputElement.JOYSTICK_TOP;
+    private static final int RIGHT = JOYSTICK.dpadRightButton.code;
+    private static final int MOVE = InputEvent.ACTION_MOVE;
+
+    /**
+     * Keeps the derived events as {action, button code, event time, repeat count} tuples.
+     */
+    private final List<long[]> events = new ArrayList<>();
+    private final DpadDeriver.Listener listener = new DpadDeriver.Listener() {
+        @Override
+        public void onDpadEvent(int deviceId, int buttonCode, long firstDownTime,
+                                long eventTime, int action, float pressure, int repeatCount) {
+            events.add(new long[]{action, buttonCode, eventTime, repeatCount});
+        }
+    };
+
+    private DpadDeriver deriver;
+
+    @Before
+    public void setUp() {
+        deriver = new DpadDeriver(DpadDeriver.DEFAULT_PRESS_THRESHOLD,
+                DpadDeriver.DEFAULT_RELEASE_THRESHOLD);
+    }
+
+    private void moveTo(long eventTime, float x) {
+        deriver.onJoystickEvent(0, JOYSTICK.code, eventTime, MOVE, x, 0.0f, listener);
+    }
+
+    private static void assertEvent(long[] event, int action, long eventTime, int repeatCount) {
+        assertEquals(action, event[0]);
+        assertEquals(RIGHT, event[1]);
+        assertEquals(eventTime, event[2]);
+        assertEquals(repeatCount, event[3]);
+    }
+
+    @Test
+    public void sendsOnlyThePressAndTheReleaseWhenThePressureChanges() {
+        moveTo(1000L, 0.6f);
+        moveTo(1010L, 0.8f);
+        moveTo(1020L, 0.45f);
+        moveTo(1030L, 0.3f);
+
+        assertEquals(2, events.size());
+        assertEvent(events.get(0), InputEvent.ACTION_DOWN, 1000L, 0);
+        assertEvent(events.get(1), InputEvent.ACTION_UP, 1030L, 0);
+        assertEquals(DpadDeriver.NO_REPEAT, deriver.getNextRepeatTime());
+    }
+
+    @Test
+    public void repeatsAHeldDirectionLikeTheOtherButtons() {
+        moveTo(1000L, 0.6f);
+        final long firstRepeat = 1000L + DpadDeriver.REPEAT_TIMEOUT;
+        assertEquals(firstRepeat, deriver.getNextRepeatTime());
+
+        assertEquals(firstRepeat, deriver.repeat(firstRepeat - 1, listener));
+        assertEquals(1, events.size());
+
+        final long secondRepeat = firstRepeat + DpadDeriver.REPEAT_DELAY;
+        assertEquals(secondRepeat, deriver.repeat(firstRepeat, listener));
+        assertEquals(secondRepeat + DpadDeriver.REPEAT_DELAY,
+                deriver.repeat(secondRepeat, listener));
+        moveTo(secondRepeat + 10L, 0.0f);
+
+        assertEquals(4, events.size());
+        assertEvent(events.get(1), MOVE, firstRepeat, 1);
+        assertEvent(events.get(2), MOVE, secondRepeat, 2);
+        assertEvent(events.get(3), InputEvent.ACTION_UP, secondRepeat + 10L, 2);
+        assertEquals(DpadDeriver.NO_REPEAT, deriver.repeat(secondRepeat + 1000L, listener));
+    }
+
+    @Test
+    public void doesNotCatchUpLateRepeats() {
+        moveTo(1000L, 0.6f);
+        final long late = 1000L + DpadDeriver.REPEAT_TIMEOUT + 10 * DpadDeriver.REPEAT_DELAY;
+
+        assertEquals(late + DpadDeriver.REPEAT_DELAY, deriver.repeat(late, listener));
+        assertEquals(2, events.size());
+        assertEvent(events.get(1), MOVE, late, 1);
+    }
+
+    @Test
+    public void releasesTheDirectionsWithTheJoystick() {
+        moveTo(1000L, 0.6f);
+        deriver.onJoystickEvent(0, JOYSTICK.code, 1010L, InputEvent.ACTION_UP, 0.6f, 0.0f,
+                listener);
+
+        assertEquals(2, events.size());
+        assertEvent(events.get(1), InputEvent.ACTION_UP, 1010L, 0);
+    }
+}
@@ -0,0 +1,105 @@
+package com.supenta.flitchio.sdk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventRingTest {
+    private static final int MOVE = InputEvent.ACTION_MOVE;
+
+    private static boolean offerMove(EventRing ring, int deviceId, int joystickCode, float x) {
+        return ring.offerJoystick(deviceId, joystickCode, 0L, MOVE, x, 0.0f, 0L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCapacityNotPowerOfTwo() {
+        new EventRing(12);
+    }
+
+    @Test
+    public void keepsTheEventsInOrder() {
+        EventRing ring = new EventRing(4);
+        assertTrue(ring.offerButton(0, 1, 10L, 20L, InputEvent.ACTION_DOWN, 0.5f, 2, 30L));
+        assertTrue(ring.offerJoystick(1, 0, 40L, MOVE, 0.25f, -0.75f, 50L));
+
+        final long start = ring.getReadIndex();
+        assertEquals(2L, ring.getWriteIndex() - start);
+
+        assertEquals(EventRing.KIND_BUTTON, ring.getKind(start));
+        assertEquals(0, ring.getDeviceId(start));
+        assertEquals(1, ring.getCode(start));
+        assertEquals(10L, ring.getFirstDownTime(start));
+        assertEquals(20L, ring.getEventTime(start));
+        assertEquals(InputEvent.ACTION_DOWN, ring.getFlaggedAction(start));
+        assertEquals(0.5f, ring.getValue0(start), 0.0);
+        assertEquals(2, ring.getRepeatCount(start));
+        assertEquals(30L, ring.getReceiptTime(start));
+
+        assertEquals(EventRing.KIND_JOYSTICK, ring.getKind(start + 1));
+        assertEquals(1, ring.getDeviceId(start + 1));
+        assertEquals(40L, ring.getEventTime(start + 1));
+        assertEquals(0.25f, ring.getValue0(start + 1), 0.0);
+        assertEquals(-0.75f, ring.getValue1(start + 1), 0.0);
+        assertEquals(50L, ring.getReceiptTime(start + 1));
+    }
+
+    @Test
+    public void dropsTheNewestEventsWhenFull() {
+        EventRing ring = new EventRing(2);
+        assertTrue(offerMove(ring, 0, 0, 0.1f));
+        assertTrue(offerMove(ring, 0, 0, 0.2f));
+        assertFalse(offerMove(ring, 0, 0, 0.3f));
+
+        // The events already in the ring are left untouched
+        assertEquals(0.1f, ring.getValue0(ring.getReadIndex()), 0.0);
+        assertEquals(0.2f, ring.getValue0(ring.getReadIndex() + 1), 0.0);
+    }
+
+    @Test
+    public void reusesTheReleasedSlots() {
+        EventRing ring = new EventRing(2);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(offerMove(ring, 0, 0, i));
+            assertTrue(offerMove(ring, 0, 0, i + 0.5f));
+
+            final long start = ring.getReadIndex();
+            assertEquals((float) i, ring.getValue0(start), 0.0);
+            assertEquals(i + 0.5f, ring.getValue0(start + 1), 0.0);
+            ring.release(start + 2);
+        }
+        assertEquals(ring.getWriteIndex(), ring.getReadIndex());
+    }
+
+    @Test
+    public void coalescesAllButTheNewestMoveOfEachJoystick() {
+        EventRing ring = new EventRing(8);
+        offerMove(ring, 0, 0, 0.1f);
+        offerMove(ring, 0, 1, 0.2f);
+        offerMove(ring, 0, 0, 0.3f);
+        offerMove(ring, 1, 0, 0.4f);
+        offerMove(ring, 0, 0, 0.5f);
+
+        final long start = ring.getReadIndex();
+        assertEquals(2, ring.coalesceJoystickMoves(start, ring.getWriteIndex()));
+        assertTrue(ring.isCoalesced(start));
+        assertFalse(ring.isCoalesced(start + 1));
+        assertTrue(ring.isCoalesced(start + 2));
+        // Another device is another joystick
+        assertFalse(ring.isCoalesced(start + 3));
+        assertFalse(ring.isCoalesced(start + 4));
+    }
+
+    @Test
+    public void neverCoalescesAcrossOtherActions() {
+        EventRing ring = new EventRing(8);
+        offerMove(ring, 0, 0, 0.1f);
+        ring.offerJoystick(0, 0, 0L, InputEvent.ACTION_UP, 0.0f, 0.0f, 0L);
+        offerMove(ring, 0, 0, 0.2f);
+        ring.offerButton(0, 0, 0L, 0L, InputEvent.ACTION_DOWN, 1.0f, 0, 0L);
+
+        final long start = ring.getReadIndex();
+        assertEquals(0, ring.coalesceJoystickMoves(start, ring.getWriteIndex()));
+    }
+}
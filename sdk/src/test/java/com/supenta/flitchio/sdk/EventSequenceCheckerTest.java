@@ -0,0 +1,75 @@
+package com.supenta.flitchio.sdk;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventSequenceCheckerTest {
+    private AtomicLong missed;
+    private AtomicLong reordered;
+    private EventSequenceChecker checker;
+
+    @Before
+    public void setUp() {
+        missed = new AtomicLong(0L);
+        reordered = new AtomicLong(0L);
+        checker = new EventSequenceChecker(missed, reordered);
+    }
+
+    @Test
+    public void acceptsConsecutiveNumbersFromAnyStart() {
+        assertTrue(checker.check(41));
+        assertTrue(checker.check(42));
+        assertTrue(checker.check(43));
+
+        assertEquals(0L, missed.get());
+        assertEquals(0L, reordered.get());
+    }
+
+    @Test
+    public void ignoresUnnumberedEvents() {
+        assertTrue(checker.check(1));
+        assertTrue(checker.check(0));
+        assertTrue(checker.check(2));
+
+        assertEquals(0L, missed.get());
+    }
+
+    @Test
+    public void countsTheEventsMissingInAGap() {
+        assertTrue(checker.check(1));
+        assertFalse(checker.check(5));
+        assertTrue(checker.check(6));
+
+        assertEquals(3L, missed.get());
+        assertEquals(0L, reordered.get());
+    }
+
+    @Test
+    public void countsLateAndDuplicatedEventsAsReordered() {
+        assertTrue(checker.check(1));
+        assertFalse(checker.check(3));
+        assertFalse(checker.check(2));
+        assertFalse(checker.check(3));
+        // The reference stays on the latest number
+        assertTrue(checker.check(4));
+
+        assertEquals(1L, missed.get());
+        assertEquals(2L, reordered.get());
+    }
+
+    @Test
+    public void handlesTheWrapAround() {
+        assertTrue(checker.check(Integer.MAX_VALUE));
+        assertTrue(checker.check(Integer.MIN_VALUE));
+        assertFalse(checker.check(Integer.MIN_VALUE + 2));
+
+        assertEquals(1L, missed.get());
+        assertEquals(0L, reordered.get());
+    }
+}
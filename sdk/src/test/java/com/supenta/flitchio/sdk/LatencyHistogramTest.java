@@ -0,0 +1,80 @@
+package com.supenta.flitchio.sdk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyHistogramTest {
+    private static long[] copy(LatencyHistogram histogram) {
+        long[] buckets = new long[LatencyHistogram.BUCKETS];
+        histogram.copyTo(buckets, 0);
+        return buckets;
+    }
+
+    @Test
+    public void putsDurationsInLogarithmicBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(500L);         // < 1 us
+        histogram.record(1000L);        // [1 ; 2[ us
+        histogram.record(1999L);        // [1 ; 2[ us
+        histogram.record(3000L);        // [2 ; 4[ us
+        histogram.record(1000000L);     // [512 ; 1024[ us
+
+        long[] buckets = copy(histogram);
+        assertEquals(1L, buckets[0]);
+        assertEquals(2L, buckets[1]);
+        assertEquals(1L, buckets[2]);
+        assertEquals(1L, buckets[10]);
+    }
+
+    @Test
+    public void countsLongDurationsInTheLastBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(1L, copy(histogram)[LatencyHistogram.BUCKETS - 1]);
+    }
+
+    @Test
+    public void clampsNegativeDurations() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5000L);
+
+        assertEquals(1L, copy(histogram)[0]);
+        assertEquals(0L, histogram.getSumNanos());
+    }
+
+    @Test
+    public void tracksCountSumAndMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3000L);
+        histogram.record(7000L);
+        histogram.record(5000L);
+
+        assertEquals(3L, histogram.copyTo(new long[LatencyHistogram.BUCKETS], 0));
+        assertEquals(15000L, histogram.getSumNanos());
+        assertEquals(7000L, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void copiesAtTheGivenOffset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(0L);
+
+        long[] buckets = new long[2 * LatencyHistogram.BUCKETS];
+        histogram.copyTo(buckets, LatencyHistogram.BUCKETS);
+        assertEquals(0L, buckets[0]);
+        assertEquals(1L, buckets[LatencyHistogram.BUCKETS]);
+    }
+
+    @Test
+    public void resetsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3000L);
+        histogram.reset();
+
+        assertEquals(0L, histogram.copyTo(new long[LatencyHistogram.BUCKETS], 0));
+        assertEquals(0L, histogram.getSumNanos());
+        assertEquals(0L, histogram.getMaxNanos());
+    }
+}
@@ -0,0 +1,92 @@
+package com.supenta.flitchio.sdk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LocalEventFilterTest {
+    private static final int TOP = InputElement.JOYSTICK_TOP.code;
+    private static final int BOTTOM = InputElement.JOYSTICK_BOTTOM.code;
+    private static final int MOVE = InputEvent.ACTION_MOVE;
+
+    @Test
+    public void acceptsEverythingWithoutFilter() {
+        LocalEventFilter filter = new LocalEventFilter(null, false);
+
+        assertTrue(filter.acceptReceivedButton(InputElement.BUTTON_TOP.code));
+        assertTrue(filter.acceptReceivedButton(InputElement.DPAD_TOP_UP.code));
+        assertTrue(filter.acceptJoystick(0, TOP, 0L, MOVE, 0.5f, 0.5f));
+        assertTrue(filter.acceptJoystick(0, TOP, 0L, MOVE, 0.5f, 0.5f));
+    }
+
+    @Test
+    public void dropsElementsOutOfTheFilter() {
+        LocalEventFilter filter = new LocalEventFilter(new EventFilter()
+                .button(InputElement.BUTTON_TOP)
+                .joystick(InputElement.JOYSTICK_BOTTOM), false);
+
+        assertTrue(filter.acceptReceivedButton(InputElement.BUTTON_TOP.code));
+        assertFalse(filter.acceptReceivedButton(InputElement.BUTTON_BOTTOM.code));
+        assertTrue(filter.acceptJoystick(0, BOTTOM, 0L, MOVE, 0.5f, 0.0f));
+        assertFalse(filter.acceptJoystick(0, TOP, 0L, MOVE, 0.5f, 0.0f));
+    }
+
+    @Test
+    public void dropsReceivedDpadButtonsOnlyWhenDerived() {
+        LocalEventFilter filter = new LocalEventFilter(null, true);
+
+        assertFalse(filter.acceptReceivedButton(InputElement.DPAD_TOP_UP.code));
+        assertTrue(filter.acceptButton(InputElement.DPAD_TOP_UP.code));
+        assertTrue(filter.acceptReceivedButton(InputElement.BUTTON_TOP.code));
+    }
+
+    @Test
+    public void dropsMovesUnderTheMinimumDelta() {
+        LocalEventFilter filter = new LocalEventFilter(new EventFilter()
+                .joystick(InputElement.JOYSTICK_TOP)
+                .minJoystickDelta(0.1f), false);
+
+        assertTrue(filter.acceptJoystick(0, TOP, 0L, MOVE, 0.5f, 0.0f));
+        assertFalse(filter.acceptJoystick(0, TOP, 10L, MOVE, 0.55f, 0.0f));
+        // The delta is measured from the last delivered position, not from the last received one
+        assertTrue(filter.acceptJoystick(0, TOP, 20L, MOVE, 0.6f, 0.0f));
+    }
+
+    @Test
+    public void dropsMovesOverTheMaximumRate() {
+        LocalEventFilter filter = new LocalEventFilter(new EventFilter()
+                .joystick(InputElement.JOYSTICK_TOP)
+                .maxJoystickRate(10), false);
+
+        assertTrue(filter.acceptJoystick(0, TOP, 1000L, MOVE, 0.1f, 0.0f));
+        assertFalse(filter.acceptJoystick(0, TOP, 1050L, MOVE, 0.2f, 0.0f));
+        assertTrue(filter.acceptJoystick(0, TOP, 1100L, MOVE, 0.3f, 0.0f));
+    }
+
+    @Test
+    public void alwaysDeliversMoveBackToCentre() {
+        LocalEventFilter filter = new LocalEventFilter(new EventFilter()
+                .joystick(InputElement.JOYSTICK_TOP)
+                .minJoystickDelta(0.5f)
+                .maxJoystickRate(10), false);
+
+        assertTrue(filter.acceptJoystick(0, TOP, 1000L, MOVE, 0.6f, 0.0f));
+        assertTrue(filter.acceptJoystick(0, TOP, 1200L, MOVE, 0.2f, 0.45f));
+        // Released within both the interval and the minimum delta of the last delivered move
+        assertTrue(filter.acceptJoystick(0, TOP, 1210L, MOVE, 0.0f, 0.0f));
+    }
+
+    @Test
+    public void limitsEachJoystickOfEachDeviceSeparately() {
+        LocalEventFilter filter = new LocalEventFilter(new EventFilter()
+                .joystick(InputElement.JOYSTICK_TOP)
+                .joystick(InputElement.JOYSTICK_BOTTOM)
+                .maxJoystickRate(10), false);
+
+        assertTrue(filter.acceptJoystick(0, TOP, 1000L, MOVE, 0.1f, 0.0f));
+        assertTrue(filter.acceptJoystick(0, BOTTOM, 1010L, MOVE, 0.1f, 0.0f));
+        assertTrue(filter.acceptJoystick(1, TOP, 1020L, MOVE, 0.1f, 0.0f));
+        assertFalse(filter.acceptJoystick(1, TOP, 1030L, MOVE, 0.2f, 0.0f));
+    }
+}
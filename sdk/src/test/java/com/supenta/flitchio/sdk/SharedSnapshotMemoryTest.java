@@ -0,0 +1,151 @@
+package com.supenta.flitchio.sdk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SharedSnapshotMemoryTest {
+    private static final int BUTTONS = InputElement.BUTTONS.length;
+    private static final int JOYSTICKS = InputElement.JOYSTICKS.length;
+
+    private File file;
+    private RandomAccessFile writerFile;
+    private FileInputStream readerFile;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("snapshot", ".mem");
+        writerFile = new RandomAccessFile(file, "rw");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (readerFile != null) {
+            readerFile.close();
+        }
+        writerFile.close();
+        file.delete();
+    }
+
+    /**
+     * Create a region the way the Manager does, and return the writable mapping.
+     */
+    private MappedByteBuffer createRegion(int buttonRecords, int joystickRecords)
+            throws IOException {
+        final int size = SharedSnapshotMemory.getSize(buttonRecords, joystickRecords);
+        writerFile.setLength(size);
+        MappedByteBuffer memory = writerFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                size);
+        SharedSnapshotMemory.format(memory, buttonRecords, joystickRecords);
+        return memory;
+    }
+
+    private SharedSnapshotMemory mapRegion() throws IOException {
+        readerFile = new FileInputStream(file);
+        return SharedSnapshotMemory.map(readerFile.getChannel(), null);
+    }
+
+    @Test
+    public void fencesAreAvailable() {
+        // Otherwise the other tests only check the fallback
+        assertTrue(SharedSnapshotMemory.isSupported());
+    }
+
+    @Test
+    public void readsPublishedState() throws IOException {
+        ByteBuffer writer = createRegion(BUTTONS, JOYSTICKS);
+        ButtonEvent[] buttonEvents = new ButtonEvent[BUTTONS];
+        buttonEvents[InputElement.BUTTON_TOP.code] = new ButtonEvent(InputElement.BUTTON_TOP,
+                100L, 120L, InputEvent.ACTION_MOVE | InputEvent.FLAG_DISPATCH, 0.75f, 3);
+        JoystickEvent[] joystickEvents = new JoystickEvent[JOYSTICKS];
+        joystickEvents[InputElement.JOYSTICK_BOTTOM.code] = new JoystickEvent(
+                InputElement.JOYSTICK_BOTTOM, 130L,
+                InputEvent.ACTION_MOVE | InputEvent.FLAG_DISPATCH, 0.5f, -0.25f);
+        SharedSnapshotMemory.publish(writer, buttonEvents, joystickEvents);
+
+        SharedSnapshotMemory memory = mapRegion();
+        assertNotNull(memory);
+        FlitchioSnapshot snapshot = new FlitchioSnapshot();
+        assertTrue(memory.read(snapshot));
+
+        final int top = InputElement.BUTTON_TOP.code;
+        assertEquals(FlitchioSnapshot.STATE_PRESSED, snapshot.getButtonState(top));
+        assertEquals(0.75f, snapshot.getButtonPressure(top), 0.0);
+        assertEquals(3, snapshot.getButtonRepeatCount(top));
+        assertEquals(120L, snapshot.getButtonEventTime(top));
+        assertEquals(100L, snapshot.getButtonFirstDownTime(top));
+        assertEquals(FlitchioSnapshot.STATE_RELEASED,
+                snapshot.getButtonState(InputElement.BUTTON_BOTTOM.code));
+
+        final int bottom = InputElement.JOYSTICK_BOTTOM.code;
+        assertEquals(InputEvent.ACTION_MOVE, snapshot.getJoystickAction(bottom));
+        assertEquals(0.5f, snapshot.getJoystickX(bottom), 0.0);
+        assertEquals(-0.25f, snapshot.getJoystickY(bottom), 0.0);
+        assertEquals(130L, snapshot.getJoystickEventTime(bottom));
+        assertEquals(InputEvent.ACTION_NONE,
+                snapshot.getJoystickAction(InputElement.JOYSTICK_TOP.code));
+    }
+
+    @Test
+    public void ignoresRecordsUnknownToThisVersion() throws IOException {
+        ByteBuffer writer = createRegion(BUTTONS + 2, JOYSTICKS + 1);
+        JoystickEvent[] joystickEvents = new JoystickEvent[JOYSTICKS + 1];
+        joystickEvents[InputElement.JOYSTICK_TOP.code] = new JoystickEvent(
+                InputElement.JOYSTICK_TOP, 10L, InputEvent.ACTION_MOVE, 1.0f, 0.0f);
+        SharedSnapshotMemory.publish(writer, new ButtonEvent[0], joystickEvents);
+
+        SharedSnapshotMemory memory = mapRegion();
+        assertNotNull(memory);
+        FlitchioSnapshot snapshot = new FlitchioSnapshot();
+        assertTrue(memory.read(snapshot));
+        assertEquals(1.0f, snapshot.getJoystickX(InputElement.JOYSTICK_TOP.code), 0.0);
+    }
+
+    @Test
+    public void failsWhileWriteIsInProgress() throws IOException {
+        ByteBuffer writer = createRegion(BUTTONS, JOYSTICKS);
+        SharedSnapshotMemory memory = mapRegion();
+        assertNotNull(memory);
+
+        // Simulate a writer that died in the middle of an update
+        writer.putInt(8, 1);
+        assertFalse(memory.read(new FlitchioSnapshot()));
+
+        writer.putInt(8, 2);
+        assertTrue(memory.read(new FlitchioSnapshot()));
+    }
+
+    @Test
+    public void rejectsEmptyFile() throws IOException {
+        // This is what an ashmem region looks like from its file descriptor
+        assertNull(mapRegion());
+    }
+
+    @Test
+    public void rejectsUnknownLayout() throws IOException {
+        ByteBuffer writer = createRegion(BUTTONS, JOYSTICKS);
+        writer.putInt(4, SharedSnapshotMemory.LAYOUT_VERSION + 1);
+        assertNull(mapRegion());
+    }
+
+    @Test
+    public void rejectsTruncatedFile() throws IOException {
+        createRegion(BUTTONS, JOYSTICKS);
+        writerFile.setLength(SharedSnapshotMemory.HEADER_SIZE);
+        assertNull(mapRegion());
+    }
+}
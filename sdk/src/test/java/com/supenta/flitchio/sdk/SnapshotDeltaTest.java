@@ -0,0 +1,72 @@
+package com.supenta.flitchio.sdk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The parcel format itself relies on {@link android.os.Parcel}, which is native: it isn't covered
+ * by these JVM tests.
+ */
+public class SnapshotDeltaTest {
+    private static final int TOP = InputElement.BUTTON_TOP.code;
+    private static final int BOTTOM = InputElement.BUTTON_BOTTOM.code;
+    private static final int JOYSTICK = InputElement.JOYSTICK_TOP.code;
+
+    private static FlitchioSnapshot stateWithButtonsAt(float pressure) {
+        FlitchioSnapshot state = new FlitchioSnapshot();
+        for (int i = 0; i < InputElement.BUTTONS.length; i++) {
+            state.setButton(i, 1L, 2L, FlitchioSnapshot.STATE_PRESSED, pressure, 0);
+        }
+        for (int i = 0; i < InputElement.JOYSTICKS.length; i++) {
+            state.setJoystick(i, 2L, InputEvent.ACTION_MOVE, pressure, -pressure);
+        }
+        return state;
+    }
+
+    @Test
+    public void appliesOnlyTheChangedElements() {
+        SnapshotDelta delta = new SnapshotDelta();
+        delta.set(7L, stateWithButtonsAt(1.0f), 1 << TOP, 1 << JOYSTICK);
+
+        FlitchioSnapshot snapshot = stateWithButtonsAt(0.5f);
+        delta.applyTo(snapshot);
+
+        assertEquals(7L, delta.getSequence());
+        assertEquals(1.0f, snapshot.getButtonPressure(TOP), 0.0);
+        assertEquals(0.5f, snapshot.getButtonPressure(BOTTOM), 0.0);
+        assertEquals(1.0f, snapshot.getJoystickX(JOYSTICK), 0.0);
+        assertEquals(-1.0f, snapshot.getJoystickY(JOYSTICK), 0.0);
+        assertEquals(0.5f, snapshot.getJoystickX(InputElement.JOYSTICK_BOTTOM.code), 0.0);
+    }
+
+    @Test
+    public void emptyDeltaChangesNothing() {
+        SnapshotDelta delta = new SnapshotDelta();
+        delta.set(8L, stateWithButtonsAt(1.0f), 0, 0);
+
+        FlitchioSnapshot snapshot = stateWithButtonsAt(0.5f);
+        delta.applyTo(snapshot);
+
+        for (int i = 0; i < InputElement.BUTTONS.length; i++) {
+            assertEquals(0.5f, snapshot.getButtonPressure(i), 0.0);
+        }
+        for (int i = 0; i < InputElement.JOYSTICKS.length; i++) {
+            assertEquals(0.5f, snapshot.getJoystickX(i), 0.0);
+        }
+    }
+
+    @Test
+    public void recycledDeltaIsEmpty() {
+        SnapshotDelta delta = SnapshotDelta.obtain();
+        delta.set(9L, stateWithButtonsAt(1.0f), ~0, ~0);
+        delta.recycle();
+
+        // Whichever instance the pool gives back, it must not hold the previous elements
+        SnapshotDelta reused = SnapshotDelta.obtain();
+        FlitchioSnapshot snapshot = stateWithButtonsAt(0.5f);
+        reused.applyTo(snapshot);
+        assertEquals(0.5f, snapshot.getButtonPressure(TOP), 0.0);
+        assertEquals(0.5f, snapshot.getJoystickX(JOYSTICK), 0.0);
+    }
+}
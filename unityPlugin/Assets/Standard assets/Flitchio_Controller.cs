@@ -1,12 +1,39 @@
 ﻿using UnityEngine;
+using System;
 using System.Collections;
+using System.Runtime.InteropServices;
 
 public class Flitchio_Controller
 {
 
+	// KEEP IT SYNCED WITH FlitchioSnapshot#writeTo(ByteBuffer)
+	// The number of buttons isn't repeated here: it is deduced from FlitchioSnapshot.BULK_SIZE.
+	private const int JOYSTICK_COUNT = 2;
+	private const int VALUES_PER_BUTTON = 5;
+	private const int VALUES_PER_JOYSTICK = 2;
+	private const int OFFSET_BUTTON_STATE = 0;
+	private const int OFFSET_BUTTON_PRESSURE = 1;
+	private const int OFFSET_BUTTON_REPEAT_COUNT = 2;
+	private const int OFFSET_BUTTON_PRESS_COUNT = 3;
+	private const int OFFSET_BUTTON_RELEASE_COUNT = 4;
+
 	private readonly AndroidJavaObject mCurrentActivity;
 	private readonly AndroidJavaObject mController;
 
+	/*
+	 * The whole snapshot is fetched with a single JNI call per frame: the Java side writes it into
+	 * a direct buffer, which is then copied natively into mSnapshot. The references and the method
+	 * ID are resolved once, so that polling creates no garbage.
+	 */
+	private readonly IntPtr mControllerRef;
+	private readonly IntPtr mBufferRef;
+	private readonly IntPtr mBufferAddress;
+	private readonly IntPtr mObtainSnapshotMethod;
+	private readonly jvalue[] mObtainSnapshotArgs;
+	private readonly float[] mSnapshot;
+	/* The joysticks are written after all the buttons, at the end of the snapshot. */
+	private readonly int mOffsetJoysticks;
+
 	public Flitchio_Controller ()
 	{
 		Debug.Log ("Flitchio_Controller$ctor");
@@ -16,6 +43,20 @@ public class Flitchio_Controller
 
 		AndroidJavaClass flitchioControllerCls = new AndroidJavaClass ("com.supenta.flitchio.sdk.FlitchioController");
 		mController = flitchioControllerCls.CallStatic<AndroidJavaObject> ("getInstance", mCurrentActivity);
+
+		AndroidJavaClass flitchioSnapshotCls = new AndroidJavaClass ("com.supenta.flitchio.sdk.FlitchioSnapshot");
+		AndroidJavaObject buffer = flitchioSnapshotCls.CallStatic<AndroidJavaObject> ("allocateBulkBuffer");
+
+		mSnapshot = new float[flitchioSnapshotCls.GetStatic<int> ("BULK_SIZE") / sizeof (float)];
+		mOffsetJoysticks = mSnapshot.Length - JOYSTICK_COUNT * VALUES_PER_JOYSTICK;
+
+		mControllerRef = AndroidJNI.NewGlobalRef (mController.GetRawObject ());
+		mBufferRef = AndroidJNI.NewGlobalRef (buffer.GetRawObject ());
+		mBufferAddress = AndroidJNI.GetDirectBufferAddress (mBufferRef);
+		mObtainSnapshotMethod = AndroidJNI.GetMethodID (mController.GetRawClass (), "obtainSnapshot", "(Ljava/nio/ByteBuffer;)V");
+
+		mObtainSnapshotArgs = new jvalue[1];
+		mObtainSnapshotArgs [0].l = mBufferRef;
 	}
 
 	public bool onCreate ()
@@ -39,6 +80,9 @@ public class Flitchio_Controller
 	{
 		Debug.Log ("Flitchio_Controller$onDestroy()");
 		mController.Call ("onDestroy");
+
+		AndroidJNI.DeleteGlobalRef (mBufferRef);
+		AndroidJNI.DeleteGlobalRef (mControllerRef);
 	}
 
 	public int getVersionCode ()
@@ -56,33 +100,47 @@ public class Flitchio_Controller
 		return mController.CallStatic<int> ("getFlitchioManagerVersionCode", mCurrentActivity);
 	}
 
-	public AndroidJavaObject obtainSnapshot ()
+	/*
+	 * Fetch the latest state of Flitchio, to be read with the getters below. Call it once per frame.
+	 */
+	public void updateSnapshot ()
+	{
+		AndroidJNI.CallVoidMethod (mControllerRef, mObtainSnapshotMethod, mObtainSnapshotArgs);
+		Marshal.Copy (mBufferAddress, mSnapshot, 0, mSnapshot.Length);
+	}
+
+	public float getJoystickX (int joystickCode)
+	{
+		return mSnapshot [mOffsetJoysticks + joystickCode * VALUES_PER_JOYSTICK];
+	}
+
+	public float getJoystickY (int joystickCode)
 	{
-		return mController.Call<AndroidJavaObject> ("obtainSnapshot");
+		return mSnapshot [mOffsetJoysticks + joystickCode * VALUES_PER_JOYSTICK + 1];
 	}
 
-	public float getJoystickX (AndroidJavaObject snapshot, int joystickCode)
+	public float getButtonPressure (int buttonCode)
 	{
-		return snapshot.Call<float> ("getJoystickX", joystickCode);
+		return mSnapshot [buttonCode * VALUES_PER_BUTTON + OFFSET_BUTTON_PRESSURE];
 	}
 
-	public float getJoystickY (AndroidJavaObject snapshot, int joystickCode)
+	public int getButtonState (int buttonCode)
 	{
-		return snapshot.Call<float> ("getJoystickY", joystickCode);
+		return (int)mSnapshot [buttonCode * VALUES_PER_BUTTON + OFFSET_BUTTON_STATE];
 	}
 
-	public float getButtonPressure (AndroidJavaObject snapshot, int buttonCode)
+	public int getButtonRepeatCount (int buttonCode)
 	{
-		return snapshot.Call<float> ("getButtonPressure", buttonCode);
+		return (int)mSnapshot [buttonCode * VALUES_PER_BUTTON + OFFSET_BUTTON_REPEAT_COUNT];
 	}
 
-	public int getButtonState (AndroidJavaObject snapshot, int buttonCode)
+	public int getButtonPressCount (int buttonCode)
 	{
-		return snapshot.Call<int> ("getButtonState", buttonCode);
+		return (int)mSnapshot [buttonCode * VALUES_PER_BUTTON + OFFSET_BUTTON_PRESS_COUNT];
 	}
 
-	public int getButtonRepeatCount (AndroidJavaObject snapshot, int buttonCode)
+	public int getButtonReleaseCount (int buttonCode)
 	{
-		return snapshot.Call<int> ("getButtonRepeatCount", buttonCode);
+		return (int)mSnapshot [buttonCode * VALUES_PER_BUTTON + OFFSET_BUTTON_RELEASE_COUNT];
 	}
 }
@@ -33,17 +33,17 @@ public class Flitchio_Input : MonoBehaviour
 	// Update is called once per frame
 	void Update ()
 	{
-		AndroidJavaObject snapshot = flitchioController.obtainSnapshot ();
+		flitchioController.updateSnapshot ();
 
-		mAxes [axisHorizontal] = flitchioController.getJoystickX (snapshot, JOYSTICK_BOTTOM);
-		mAxes [axisVertical] = flitchioController.getJoystickY (snapshot, JOYSTICK_BOTTOM);
+		mAxes [axisHorizontal] = flitchioController.getJoystickX (JOYSTICK_BOTTOM);
+		mAxes [axisVertical] = flitchioController.getJoystickY (JOYSTICK_BOTTOM);
 
-		mAxes [axisLookHorizontal] = flitchioController.getJoystickX (snapshot, JOYSTICK_TOP);
-		mAxes [axisLookVertical] = flitchioController.getJoystickY (snapshot, JOYSTICK_TOP);
+		mAxes [axisLookHorizontal] = flitchioController.getJoystickX (JOYSTICK_TOP);
+		mAxes [axisLookVertical] = flitchioController.getJoystickY (JOYSTICK_TOP);
 
 		// TODO also deal with BUTTON_BOTTOM
-		mButtonTopState = flitchioController.getButtonState (snapshot, BUTTON_TOP);
-		mButtonTopPressure = flitchioController.getButtonPressure (snapshot, BUTTON_TOP);
+		mButtonTopState = flitchioController.getButtonState (BUTTON_TOP);
+		mButtonTopPressure = flitchioController.getButtonPressure (BUTTON_TOP);
 	}
 
 